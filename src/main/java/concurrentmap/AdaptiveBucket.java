@@ -0,0 +1,350 @@
+package concurrentmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Hybrid bucket that starts as a linked chain like {@link Bucket} and converts
+ * itself into a balanced tree once its chain grows long, like the bins of
+ * JDK 8 HashMap.
+ * <p>
+ * Well-distributed buckets stay on the cheap chain path, while a bucket hit by
+ * many collisions gets logarithmic lookups. The tree is converted back into a
+ * chain when removals shrink it below {@link #UNTREEIFY_THRESHOLD}; the gap
+ * between the two thresholds avoids flipping back and forth.
+ *
+ * @param <K> Type of key
+ * @param <V> Type of value
+ */
+public class AdaptiveBucket<K, V> implements BucketInterface<K, V> {
+
+    /** Chain length above which the bucket becomes a tree. */
+    static final int TREEIFY_THRESHOLD = 8;
+
+    /** Tree size at or below which the bucket becomes a chain again. */
+    static final int UNTREEIFY_THRESHOLD = 6;
+
+    private Entry<K, V> head; // chain form, null while treeified
+    private HashTree<K, V> tree; // tree form, null while chained
+    private int count; // entries in the chain
+    private final ReentrantLock lock; // Lock for thread safe operations
+    private ForwardingNode<K, V> forward; // Set once entries moved to a resized table
+
+    /**
+     * Constructs a new empty AdaptiveBucket in chain form.
+     */
+    public AdaptiveBucket() {
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Inserts or updates a key-value pair, treeifying the bucket when the
+     * chain exceeds {@link #TREEIFY_THRESHOLD}.
+     *
+     * @param hash  the hash of the key
+     * @param key   the key to insert or update
+     * @param value the value to associate with the key
+     * @return the previous value if key existed, otherwise null
+     */
+    @Override
+    public V put(int hash, K key, V value) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                if (tree != null) {
+                    Entry<K, V> existing = tree.find(hash, key);
+                    if (existing != null) {
+                        V oldValue = existing.value;
+                        existing.value = value;
+                        return oldValue;
+                    }
+                    tree.insert(new Entry<>(hash, key, value));
+                    return null;
+                }
+
+                Entry<K, V> current = head;
+                Entry<K, V> last = null;
+                while (current != null) {
+                    if (current.keyEquals(hash, key)) {
+                        V oldValue = current.value;
+                        current.value = value;
+                        return oldValue;
+                    }
+                    last = current;
+                    current = current.next;
+                }
+
+                Entry<K, V> entry = new Entry<>(hash, key, value);
+                if (last == null) {
+                    head = entry;
+                } else {
+                    last.next = entry;
+                }
+                if (++count > TREEIFY_THRESHOLD) {
+                    tree = HashTree.of(head);
+                    head = null;
+                    count = 0;
+                }
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).put(hash, key, value);
+    }
+
+    /**
+     * Retrieves a value by key, walking the chain or descending the tree.
+     *
+     * @param hash the hash of the key
+     * @param key the key to look up
+     * @return the value if found, otherwise null
+     */
+    @Override
+    public V get(int hash, K key) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                if (tree != null) {
+                    Entry<K, V> e = tree.find(hash, key);
+                    return e == null ? null : e.access();
+                }
+                for (Entry<K, V> current = head; current != null; current = current.next) {
+                    if (current.keyEquals(hash, key)) {
+                        return current.access();
+                    }
+                }
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).get(hash, key);
+    }
+
+    /**
+     * Removes a key-value pair, converting the tree back into a chain when it
+     * shrinks to {@link #UNTREEIFY_THRESHOLD} entries.
+     *
+     * @param hash the hash of the key
+     * @param key the key to remove
+     * @return the removed value, or null if key not found
+     */
+    @Override
+    public V remove(int hash, K key) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                if (tree != null) {
+                    Entry<K, V> removed = tree.remove(hash, key);
+                    if (removed == null) {
+                        return null;
+                    }
+                    if (tree.size() <= UNTREEIFY_THRESHOLD) {
+                        count = tree.size();
+                        head = tree.toChain();
+                        tree = null;
+                    }
+                    return removed.value;
+                }
+
+                Entry<K, V> prev = null;
+                for (Entry<K, V> current = head; current != null; prev = current, current = current.next) {
+                    if (current.keyEquals(hash, key)) {
+                        if (prev == null) {
+                            head = current.next;
+                        } else {
+                            prev.next = current.next;
+                        }
+                        count--;
+                        return current.value;
+                    }
+                }
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).remove(hash, key);
+    }
+
+    /**
+     * Computes a new value for the key under the bucket lock, in chain or
+     * tree form, converting between the two forms as put and remove do.
+     *
+     * @param hash              the hash of the key
+     * @param key               the key to compute a value for
+     * @param remappingFunction computes the new value from the key and the current value
+     * @return the new value, or null if the key is now absent
+     */
+    @Override
+    public V compute(int hash, K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                if (tree != null) {
+                    Entry<K, V> existing = tree.find(hash, key);
+                    V newValue = remappingFunction.apply(key, existing == null ? null : existing.value);
+                    if (existing == null) {
+                        if (newValue != null) {
+                            tree.insert(new Entry<>(hash, key, newValue));
+                        }
+                    } else if (newValue == null) {
+                        tree.remove(hash, key);
+                        if (tree.size() <= UNTREEIFY_THRESHOLD) {
+                            count = tree.size();
+                            head = tree.toChain();
+                            tree = null;
+                        }
+                    } else {
+                        existing.value = newValue;
+                    }
+                    return newValue;
+                }
+
+                Entry<K, V> prev = null;
+                Entry<K, V> current = head;
+                while (current != null && !current.keyEquals(hash, key)) {
+                    prev = current;
+                    current = current.next;
+                }
+                V newValue = remappingFunction.apply(key, current == null ? null : current.value);
+                if (current == null) {
+                    if (newValue != null) {
+                        Entry<K, V> entry = new Entry<>(hash, key, newValue);
+                        if (prev == null) {
+                            head = entry;
+                        } else {
+                            prev.next = entry;
+                        }
+                        if (++count > TREEIFY_THRESHOLD) {
+                            tree = HashTree.of(head);
+                            head = null;
+                            count = 0;
+                        }
+                    }
+                } else if (newValue == null) {
+                    if (prev == null) {
+                        head = current.next;
+                    } else {
+                        prev.next = current.next;
+                    }
+                    count--;
+                } else {
+                    current.value = newValue;
+                }
+                return newValue;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).compute(hash, key, remappingFunction);
+    }
+
+    /**
+     * Returns the number of entries in this bucket.
+     *
+     * @return the total number of entries in this bucket
+     */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return tree != null ? tree.size() : count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries in this bucket. Alias for size().
+     *
+     * @return the total number of entries in this bucket
+     */
+    @Override
+    public int getLoad() {
+        return size();
+    }
+
+    /**
+     * Returns a snapshot list of all entries in this bucket, in chain order
+     * or tree order depending on the current form.
+     *
+     * @return a list of {@link Entry} objects currently stored in this bucket
+     */
+    @Override
+    public List<Entry<K, V>> getEntries() {
+        lock.lock();
+        try {
+            if (tree != null) {
+                return tree.entries();
+            }
+            List<Entry<K, V>> entries = new ArrayList<>(count);
+            for (Entry<K, V> current = head; current != null; current = current.next) {
+                entries.add(current);
+            }
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns true while the bucket is in tree form.
+     */
+    boolean isTreeified() {
+        lock.lock();
+        try {
+            return tree != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Seals this bucket and moves its entries into the target table, where
+     * each receiving bucket decides its own form.
+     *
+     * @param target the table receiving the entries
+     */
+    @Override
+    public void transferTo(ConcurrentCustomMap<K, V> target) {
+        ForwardingNode<K, V> fwd = new ForwardingNode<>(target);
+        List<Entry<K, V>> moved;
+        lock.lock();
+        try {
+            if (forward != null) {
+                return; // already migrated
+            }
+            moved = new ArrayList<>(tree != null ? tree.size() : count);
+            if (tree != null) {
+                moved.addAll(tree.entries());
+            } else {
+                for (Entry<K, V> current = head; current != null; current = current.next) {
+                    moved.add(current);
+                }
+            }
+            head = null;
+            tree = null;
+            count = 0;
+            forward = fwd;
+        } finally {
+            lock.unlock();
+        }
+        for (Entry<K, V> e : moved) {
+            target.getBucket(e.hash).put(e.hash, e.key, e.value);
+        }
+        fwd.complete();
+    }
+}
@@ -0,0 +1,358 @@
+package concurrentmap;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache on top of a {@link ConcurrentCustomMap} that holds at most a fixed
+ * number of entries, evicting with the CLOCK policy, optionally behind a
+ * W-TinyLFU admission filter.
+ * <p>
+ * Reads go straight to the map. The bucket that finds the entry sets its
+ * access bit ({@link Entry#access()}), so a hit costs no more locking than a
+ * plain {@code get} and only writes to the entry the first time it is read
+ * after a sweep.
+ * <p>
+ * A put that grows the cache past its maximum size runs the clock hand over
+ * the bucket table, bucket by bucket: entries whose bit is set get a second
+ * chance and have it cleared, the others are evicted. The hand is the only
+ * shared eviction state and is guarded by a lock taken by writers over the
+ * limit only. Walking the table instead of a separate ring costs no memory
+ * per entry beyond the bit. If readers keep setting bits faster than the hand
+ * clears them, the hand evicts regardless after two full turns.
+ * <p>
+ * With {@link Policy#W_TINY_LFU}, new keys first enter a small FIFO window
+ * of 1% of the capacity, which the hand skips; the cache keeps a set of the
+ * window's entries for that, so entries carry no W-TinyLFU state. A key
+ * leaving the window is admitted to the main region only if a
+ * {@link FrequencySketch}, fed by every get, has seen it more often than the
+ * entry the hand would evict in its place; otherwise the newcomer is
+ * evicted. Inserts are not counted, as the get that missed already counted
+ * the key. Keys read once, as in a scan, then never push out hot ones.
+ * <p>
+ * The size is enforced once concurrent puts have returned; while they run it
+ * may exceed the maximum by the number of writers waiting for the hand.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class BoundedCache<K, V> implements MapInterface<K, V> {
+
+    /** How entries are chosen for eviction. */
+    public enum Policy {
+        /** Evict the first entry the clock hand finds unreferenced. */
+        CLOCK,
+        /** CLOCK behind a FIFO window and frequency-based admission. */
+        W_TINY_LFU
+    }
+
+    private final ConcurrentCustomMap<K, V> map;
+    private final long maximumSize;
+    private final Policy policy;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final SingleFlight<K, V> flights = new SingleFlight<>();
+
+    // clock hand, guarded by evictionLock
+    private int hand = -1; // bucket index of the current sweep
+    private List<Entry<K, V>> sweep = List.of(); // entries of that bucket
+    private int cursor; // next entry of the sweep to look at
+
+    // W-TinyLFU only
+    private final FrequencySketch sketch;
+    private final ConcurrentLinkedQueue<Entry<K, V>> window = new ConcurrentLinkedQueue<>();
+    private final ConcurrentCustomMap<Entry<K, V>, Boolean> windowMembers; // keyed by entry identity
+    private final AtomicInteger windowSize = new AtomicInteger();
+    private final int windowMaximum;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Creates an empty CLOCK cache with one bucket per expected entry.
+     *
+     * @param maximumSize    maximum number of entries
+     * @param bucketSupplier factory to create bucket instances
+     */
+    public BoundedCache(long maximumSize, Supplier<? extends BucketInterface<K, V>> bucketSupplier) {
+        this(maximumSize, bucketSupplier, Policy.CLOCK);
+    }
+
+    /**
+     * Creates an empty cache with one bucket per expected entry.
+     *
+     * @param maximumSize    maximum number of entries
+     * @param bucketSupplier factory to create bucket instances
+     * @param policy         eviction policy
+     */
+    public BoundedCache(long maximumSize, Supplier<? extends BucketInterface<K, V>> bucketSupplier, Policy policy) {
+        this(maximumSize, new ConcurrentCustomMap<>(tableSizeFor(maximumSize), bucketSupplier), policy);
+    }
+
+    /**
+     * Creates a CLOCK cache over the given map. Entries beyond the maximum
+     * are evicted by the next put that adds a key.
+     *
+     * @param maximumSize maximum number of entries
+     * @param map         map holding the entries
+     */
+    public BoundedCache(long maximumSize, ConcurrentCustomMap<K, V> map) {
+        this(maximumSize, map, Policy.CLOCK);
+    }
+
+    /**
+     * Creates a cache over the given map. Entries beyond the maximum are
+     * evicted by the next put that adds a key.
+     *
+     * @param maximumSize maximum number of entries
+     * @param map         map holding the entries
+     * @param policy      eviction policy
+     */
+    public BoundedCache(long maximumSize, ConcurrentCustomMap<K, V> map, Policy policy) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.map = map;
+        this.policy = policy;
+        this.sketch = policy == Policy.W_TINY_LFU ? new FrequencySketch(maximumSize) : null;
+        this.windowMaximum = (int) Math.max(1, maximumSize / 100);
+        this.windowMembers = sketch != null
+                ? new ConcurrentCustomMap<>(tableSizeFor(windowMaximum), LockFreeBucket::new) : null;
+    }
+
+    private static int tableSizeFor(long entries) {
+        int n = 1;
+        while (n < entries && n < 1 << 30) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    /**
+     * Inserts or updates a mapping, evicting other entries if the cache grew
+     * past its maximum size.
+     *
+     * @return the previous value, or null if the key was absent
+     */
+    @Override
+    public V put(K key, V value) {
+        V old = map.put(key, value);
+        if (old == null) {
+            if (sketch != null) {
+                enterWindow(key);
+            }
+            if (map.size() > maximumSize || windowSize.get() > windowMaximum) {
+                evict(key);
+            }
+        }
+        return old;
+    }
+
+    private void enterWindow(K key) {
+        Entry<K, V> e = map.getEntry(key);
+        if (e != null) {
+            windowMembers.put(e, Boolean.TRUE);
+            window.offer(e);
+            windowSize.incrementAndGet();
+        }
+    }
+
+    /**
+     * Retrieves a value and marks its entry as recently used.
+     */
+    @Override
+    public V get(K key) {
+        V value = map.get(key);
+        (value == null ? misses : hits).increment();
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value of the key, loading it once for all concurrent
+     * callers on a miss. Only the callers' own lookups count as hits or
+     * misses; the loaded value is inserted like any put and may evict.
+     *
+     * @see ConcurrentCustomMap#getOrLoad
+     */
+    public V getOrLoad(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        return value != null ? value : flights.load(key, loader, map::get, this::put);
+    }
+
+    @Override
+    public V remove(K key) {
+        return map.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Moves the window's overflow into the main region, then evicts until the
+     * cache is back within its maximum size. While the cache is full, a key
+     * leaving the window must beat the hand's victim on frequency to stay.
+     * The key whose insertion triggered the eviction is never chosen, so a
+     * put is not undone by its own eviction. Evictions use a conditional
+     * remove, so an entry rewritten while the hand looks at it is kept.
+     */
+    private void evict(K added) {
+        evictionLock.lock();
+        try {
+            while (windowSize.get() > windowMaximum) {
+                Entry<K, V> candidate = leaveWindow();
+                if (candidate == null) {
+                    break;
+                }
+                if (map.size() <= maximumSize) {
+                    continue; // room left, admitted as is
+                }
+                Entry<K, V> victim = nextVictim(added, candidate);
+                if (victim == null || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                    rejections.increment();
+                    evict(candidate);
+                } else {
+                    evict(victim);
+                }
+            }
+            while (map.size() > maximumSize) {
+                Entry<K, V> victim = nextVictim(added, null);
+                if (victim == null && (victim = leaveWindow()) == null) {
+                    return; // every entry left is the one just added
+                }
+                evict(victim);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void evict(Entry<K, V> e) {
+        if (map.remove(e.key, e.value)) {
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Takes the oldest entry still in the map out of the window.
+     *
+     * @return the entry, or null if the window is empty
+     */
+    private Entry<K, V> leaveWindow() {
+        Entry<K, V> e;
+        while ((e = window.poll()) != null) {
+            windowSize.decrementAndGet();
+            windowMembers.remove(e);
+            if (map.getEntry(e.key) == e) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Advances the clock hand to the next unreferenced entry of the main
+     * region, clearing the bits it passes.
+     *
+     * @param added key to skip
+     * @param skip  entry to skip
+     * @return the victim, or null if the hand went round three times without
+     *         finding an evictable entry
+     */
+    private Entry<K, V> nextVictim(K added, Entry<K, V> skip) {
+        int capacity = map.getCapacity();
+        long visited = 0;
+        while (true) {
+            boolean force = visited >= 2L * capacity;
+            while (cursor < sweep.size()) {
+                Entry<K, V> e = sweep.get(cursor++);
+                if (e == skip || Objects.equals(e.key, added)
+                        || (windowMembers != null && windowMembers.get(e) != null)) {
+                    continue;
+                }
+                if (e.referenced && !force) {
+                    e.referenced = false; // second chance
+                } else {
+                    return e;
+                }
+            }
+            if (visited++ > 3L * capacity) {
+                return null;
+            }
+            hand = hand + 1 >= capacity ? 0 : hand + 1;
+            sweep = map.linkedEntries(hand);
+            cursor = 0;
+        }
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the eviction policy.
+     */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the number of gets that found a value.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of gets that found no value.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the fraction of gets that found a value, or 0 before the first get.
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Returns the number of entries evicted to respect the maximum size.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of keys leaving the window that were evicted
+     * instead of admitted. Always 0 for {@link Policy#CLOCK}.
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * Returns the underlying map.
+     */
+    public ConcurrentCustomMap<K, V> getMap() {
+        return map;
+    }
+}
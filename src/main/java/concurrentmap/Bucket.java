@@ -2,13 +2,15 @@ package concurrentmap;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
 
 /**
  * Represents a single bucket in the Concurrent Custom HashMap.
  * Each bucket maintains its own lock for fine-grained concurrency control.
- * 
+ *
  * @param <K> Type of key
  * @param <V> Type of value
  */
@@ -16,6 +18,7 @@ import java.util.concurrent.locks.ReentrantLock;
 public class Bucket<K, V> implements BucketInterface<K, V> {
     private Entry<K, V> head; // HEad of linked list
     private final ReentrantLock lock; // Lock for thread safe operations
+    private ForwardingNode<K, V> forward; // Set once entries moved to a resized table
 
     /**
      * Constructs a new empty Bucket with its own lock.
@@ -29,105 +32,350 @@ public class Bucket<K, V> implements BucketInterface<K, V> {
      * Inserts or updates a key-value pair in this bucket.
      * Uses bucket-level locking for thread safety.
      *
+     * @param hash  the hash of the key
      * @param key   the key to insert or update
      * @param value the value to associate with the key
      */
     @Override
-    public V put(K key, V value) {
+    public V put(int hash, K key, V value) {
+        ForwardingNode<K, V> fwd;
         lock.lock();
         try {
-            // If the bucket is empty, insert at head
-            if (head == null) {
-                head = new Entry<>(key, value);
-                return null;
-            }
-
-            // Traverse the linked list to find if key already exists
-            Entry<K, V> current = head;
-            while (current != null) {
-                if (current.keyEquals(key)) {
-                    V oldValue = current.value;
-                    // Key exists, update value
-                    current.value = value;
-                    return oldValue;
+            fwd = forward;
+            if (fwd == null) {
+                // If the bucket is empty, insert at head
+                if (head == null) {
+                    head = new Entry<>(hash, key, value);
+                    return null;
                 }
-                if (current.next == null)
-                    break; // Reached end of list
-                current = current.next;
-            }
 
-            // Key not found, insert new entry at the end
-            current.next = new Entry<>(key, value);
-            return null;
+                // Traverse the linked list to find if key already exists
+                Entry<K, V> current = head;
+                while (current != null) {
+                    if (current.keyEquals(hash, key)) {
+                        V oldValue = current.value;
+                        // Key exists, update value
+                        current.value = value;
+                        return oldValue;
+                    }
+                    if (current.next == null)
+                        break; // Reached end of list
+                    current = current.next;
+                }
 
+                // Key not found, insert new entry at the end
+                current.next = new Entry<>(hash, key, value);
+                return null;
+            }
         } finally {
             lock.unlock();
         }
+        // Bucket has been migrated, redirect to the resized table
+        return fwd.awaitTarget().getBucket(hash).put(hash, key, value);
     }
 
     /**
      * Retrieves a value by key from this bucket.
      * Thread-safe due to lock during traversal.
      *
+     * @param hash the hash of the key
      * @param key the key to look up
      * @return the value if found, otherwise null
      */
     @Override
-    public V get(K key) {
+    public V get(int hash, K key) {
+        ForwardingNode<K, V> fwd;
         lock.lock();
         try {
-            Entry<K, V> current = head;
-            while (current != null) {
-                if (current.keyEquals(key)) {
-                    return current.value;
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> current = head;
+                while (current != null) {
+                    if (current.keyEquals(hash, key)) {
+                        return current.access();
+                    }
+                    current = current.next;
                 }
-                current = current.next;
+                return null; // Key not found
             }
-            return null; // Key not found
         } finally {
             lock.unlock();
         }
+        return fwd.awaitTarget().getBucket(hash).get(hash, key);
     }
 
     /**
      * Removes a key-value pair from this bucket.
      * Thread-safe due to bucket-level lock.
      *
+     * @param hash the hash of the key
      * @param key the key to remove
      * @return the removed value, or null if key not found
      */
     @Override
-    public V remove(K key) {
+    public V remove(int hash, K key) {
+        ForwardingNode<K, V> fwd;
         lock.lock();
         try {
-            if (head == null) {
-                return null; // Bucket is empty
+            fwd = forward;
+            if (fwd == null) {
+                if (head == null) {
+                    return null; // Bucket is empty
+                }
+
+                // If head matches the key
+                if (head.keyEquals(hash, key)) {
+                    V oldValue = head.value;
+                    head = head.next; // remove first node
+                    return oldValue;
+                }
+
+                // Traverse list to find and unlink matching entry
+                Entry<K, V> prev = head;
+                Entry<K, V> current = head.next;
+
+                while (current != null) {
+                    if (current.keyEquals(hash, key)) {
+                        V oldValue = current.value;
+                        prev.next = current.next;
+                        return oldValue;
+                    }
+                    prev = current;
+                    current = current.next;
+                }
+                return null; // Key not found
             }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).remove(hash, key);
+    }
 
-            // If head matches the key
-            if (head.keyEquals(key)) {
-                V oldValue = head.value;
-                head = head.next; // remove first node
-                return oldValue;
+    /**
+     * Computes a new value for the key under the bucket lock, inserting, updating or
+     * unlinking its entry according to the result.
+     *
+     * @param hash              the hash of the key
+     * @param key               the key to compute a value for
+     * @param remappingFunction computes the new value from the key and the current value
+     * @return the new value, or null if the key is now absent
+     */
+    @Override
+    public V compute(int hash, K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> prev = null;
+                Entry<K, V> current = head;
+                while (current != null && !current.keyEquals(hash, key)) {
+                    prev = current;
+                    current = current.next;
+                }
+                V newValue = remappingFunction.apply(key, current == null ? null : current.value);
+                if (current == null) {
+                    if (newValue != null) {
+                        Entry<K, V> entry = new Entry<>(hash, key, newValue);
+                        if (prev == null) {
+                            head = entry;
+                        } else {
+                            prev.next = entry;
+                        }
+                    }
+                } else if (newValue == null) {
+                    if (prev == null) {
+                        head = current.next;
+                    } else {
+                        prev.next = current.next;
+                    }
+                } else {
+                    current.value = newValue;
+                }
+                return newValue;
             }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).compute(hash, key, remappingFunction);
+    }
 
-            // Traverse list to find and unlink matching entry
-            Entry<K, V> prev = head;
-            Entry<K, V> current = head.next;
+    /**
+     * Appends a new entry under the bucket lock unless the key is present.
+     *
+     * @param hash  the hash of the key
+     * @param key   the key to insert
+     * @param value the value to associate with an absent key
+     * @return the current value, or null if the entry was added
+     */
+    @Override
+    public V putIfAbsent(int hash, K key, V value) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> last = null;
+                for (Entry<K, V> current = head; current != null; current = current.next) {
+                    if (current.keyEquals(hash, key)) {
+                        return current.value;
+                    }
+                    last = current;
+                }
+                Entry<K, V> entry = new Entry<>(hash, key, value);
+                if (last == null) {
+                    head = entry;
+                } else {
+                    last.next = entry;
+                }
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).putIfAbsent(hash, key, value);
+    }
 
-            while (current != null) {
-                if (current.keyEquals(key)) {
-                    V oldValue = current.value;
-                    prev.next = current.next;
-                    return oldValue;
+    /**
+     * Replaces the value under the bucket lock if it equals the expected one.
+     *
+     * @param hash          the hash of the key
+     * @param key           the key to update
+     * @param expectedValue the value the key must currently have
+     * @param newValue      the value to store
+     * @return true if the value was replaced
+     */
+    @Override
+    public boolean replace(int hash, K key, V expectedValue, V newValue) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                for (Entry<K, V> current = head; current != null; current = current.next) {
+                    if (current.keyEquals(hash, key)) {
+                        if (!Objects.equals(current.value, expectedValue)) {
+                            return false;
+                        }
+                        current.value = newValue;
+                        return true;
+                    }
                 }
-                prev = current;
-                current = current.next;
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).replace(hash, key, expectedValue, newValue);
+    }
+
+    /**
+     * Unlinks the entry under the bucket lock if its value equals the expected one.
+     *
+     * @param hash          the hash of the key
+     * @param key           the key to remove
+     * @param expectedValue the value the key must currently have
+     * @return true if the entry was removed
+     */
+    @Override
+    public boolean remove(int hash, K key, V expectedValue) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> prev = null;
+                for (Entry<K, V> current = head; current != null; prev = current, current = current.next) {
+                    if (current.keyEquals(hash, key)) {
+                        if (!Objects.equals(current.value, expectedValue)) {
+                            return false;
+                        }
+                        if (prev == null) {
+                            head = current.next;
+                        } else {
+                            prev.next = current.next;
+                        }
+                        return true;
+                    }
+                }
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).remove(hash, key, expectedValue);
+    }
+
+    /**
+     * Inserts or updates a batch of entries under a single acquisition of
+     * the bucket lock. Absent keys are appended using the batch entries.
+     *
+     * @param batch entries of this bucket
+     * @return the number of keys added
+     */
+    @Override
+    public int putAll(List<Entry<K, V>> batch) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                int added = 0;
+                for (Entry<K, V> e : batch) {
+                    Entry<K, V> last = null;
+                    Entry<K, V> current = head;
+                    while (current != null && !current.keyEquals(e.hash, e.key)) {
+                        last = current;
+                        current = current.next;
+                    }
+                    if (current != null) {
+                        current.value = e.value;
+                        continue;
+                    }
+                    e.next = null;
+                    if (last == null) {
+                        head = e;
+                    } else {
+                        last.next = e;
+                    }
+                    added++;
+                }
+                return added;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().putBatch(batch);
+    }
+
+    /**
+     * Looks up a batch of keys under a single acquisition of the bucket lock.
+     *
+     * @param batch entries of this bucket whose values are replaced by the results
+     */
+    @Override
+    public void getAll(List<Entry<K, V>> batch) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                for (Entry<K, V> e : batch) {
+                    V value = null;
+                    for (Entry<K, V> current = head; current != null; current = current.next) {
+                        if (current.keyEquals(e.hash, e.key)) {
+                            value = current.access();
+                            break;
+                        }
+                    }
+                    e.value = value;
+                }
+                return;
             }
-            return null; // Key not found
         } finally {
             lock.unlock();
         }
+        fwd.awaitTarget().getBatch(batch);
     }
 
     /**
@@ -193,4 +441,34 @@ public class Bucket<K, V> implements BucketInterface<K, V> {
             lock.unlock();
         }
     }
+
+    /**
+     * Seals this bucket and moves its chain into the target table.
+     * <p>
+     * The chain is detached under the lock, then copied without holding it, so
+     * the bucket lock is never held while locking a bucket of the new table.
+     * Writers arriving in between wait on the forwarding marker.
+     *
+     * @param target the table receiving the entries
+     */
+    @Override
+    public void transferTo(ConcurrentCustomMap<K, V> target) {
+        ForwardingNode<K, V> fwd = new ForwardingNode<>(target);
+        Entry<K, V> chain;
+        lock.lock();
+        try {
+            if (forward != null) {
+                return; // already migrated
+            }
+            chain = head;
+            head = null;
+            forward = fwd;
+        } finally {
+            lock.unlock();
+        }
+        for (Entry<K, V> current = chain; current != null; current = current.next) {
+            target.getBucket(current.hash).put(current.hash, current.key, current.value);
+        }
+        fwd.complete();
+    }
 }
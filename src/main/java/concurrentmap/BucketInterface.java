@@ -1,7 +1,9 @@
 package concurrentmap;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -13,25 +15,154 @@ public interface BucketInterface<K,V> {
     
     /**
      * Adds or updates a key-value pair in the bucket.
+     * @param hash the hash of the key, as computed by the map
      * @param key the key to insert or update
      * @param value the value associated with the key
      * @return the previous value associated with the key, or null if none existed
      */
-    V put(K key, V value);
+    V put(int hash, K key, V value);
 
     /**
      * Retrieves the value associated with the key.
+     * @param hash the hash of the key, as computed by the map
      * @param key the key to look up
      * @return the value associated with the key, or null if not found
      */
-    V get(K key);
+    V get(int hash, K key);
 
     /**
      * Removes the key-value pair from the bucket.
+     * @param hash the hash of the key, as computed by the map
      * @param key the key to remove
      * @return the removed value, or null if key was not present
      */
-    V remove(K key);
+    V remove(int hash, K key);
+
+    /**
+     * Atomically replaces the mapping of the key with the result of the
+     * function, applied to the current value or null if there is none.
+     * A null result removes the mapping. Lock-based buckets run the function
+     * once while holding the bucket lock, so it must be short and must not
+     * touch the map; lock-free buckets may run it again if they lose a race.
+     * @param hash the hash of the key, as computed by the map
+     * @param key the key to compute a value for
+     * @param remappingFunction computes the new value from the key and the current value
+     * @return the new value, or null if the key is now absent
+     */
+    V compute(int hash, K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction);
+
+    /**
+     * Maps the key to the result of the function if it is absent.
+     * @param hash the hash of the key, as computed by the map
+     * @param key the key to compute a value for
+     * @param mappingFunction computes the value of an absent key, or null to leave it absent
+     * @return the current or computed value, or null if the key stays absent
+     */
+    default V computeIfAbsent(int hash, K key, Function<? super K, ? extends V> mappingFunction) {
+        return compute(hash, key, (k, old) -> old != null ? old : mappingFunction.apply(k));
+    }
+
+    /**
+     * Replaces the value of a present key with the result of the function;
+     * a null result removes the mapping.
+     * @param hash the hash of the key, as computed by the map
+     * @param key the key to compute a value for
+     * @param remappingFunction computes the new value from the key and the current value
+     * @return the new value, or null if the key is absent
+     */
+    default V computeIfPresent(int hash, K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return compute(hash, key, (k, old) -> old == null ? null : remappingFunction.apply(k, old));
+    }
+
+    /**
+     * Maps an absent key to the given value, or combines the current value
+     * with it; a null result removes the mapping.
+     * @param hash the hash of the key, as computed by the map
+     * @param key the key to merge a value into
+     * @param value the value to map an absent key to, or to combine with the current one
+     * @param remappingFunction combines the current value with {@code value}
+     * @return the new value, or null if the key is now absent
+     */
+    default V merge(int hash, K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return compute(hash, key, (k, old) -> old == null ? value : remappingFunction.apply(old, value));
+    }
+
+    /**
+     * Adds the mapping only if the key is absent.
+     * @param hash the hash of the key, as computed by the map
+     * @param key the key to insert
+     * @param value the value to associate with an absent key
+     * @return the current value, or null if the key was absent and is now mapped
+     */
+    default V putIfAbsent(int hash, K key, V value) {
+        AtomicReference<V> previous = new AtomicReference<>();
+        compute(hash, key, (k, old) -> {
+            previous.set(old);
+            return old != null ? old : value;
+        });
+        return previous.get();
+    }
+
+    /**
+     * Replaces the value of the key only if it currently equals {@code expectedValue}.
+     * @param hash the hash of the key, as computed by the map
+     * @param key the key to update
+     * @param expectedValue the value the key must currently have
+     * @param newValue the value to store
+     * @return true if the value was replaced
+     */
+    default boolean replace(int hash, K key, V expectedValue, V newValue) {
+        boolean[] replaced = new boolean[1];
+        compute(hash, key, (k, old) -> {
+            replaced[0] = old != null && old.equals(expectedValue);
+            return replaced[0] ? newValue : old;
+        });
+        return replaced[0];
+    }
+
+    /**
+     * Removes the mapping only if the key currently maps to {@code expectedValue}.
+     * @param hash the hash of the key, as computed by the map
+     * @param key the key to remove
+     * @param expectedValue the value the key must currently have
+     * @return true if the mapping was removed
+     */
+    default boolean remove(int hash, K key, V expectedValue) {
+        boolean[] removed = new boolean[1];
+        compute(hash, key, (k, old) -> {
+            removed[0] = old != null && old.equals(expectedValue);
+            return removed[0] ? null : old;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Inserts or updates a batch of entries that all belong to this bucket.
+     * Implementations take their lock once for the whole batch; absent keys
+     * may be linked in using the given Entry objects.
+     * @param batch entries carrying the hash, key and value to store
+     * @return the number of keys that were absent and have been added
+     */
+    default int putAll(List<Entry<K, V>> batch) {
+        int added = 0;
+        for (Entry<K, V> e : batch) {
+            if (put(e.hash, e.key, e.value) == null) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Looks up a batch of keys that all belong to this bucket, replacing the
+     * value of each given Entry with the value found, or null.
+     * @param batch entries carrying the hash and key to look up
+     */
+    default void getAll(List<Entry<K, V>> batch) {
+        for (Entry<K, V> e : batch) {
+            e.value = get(e.hash, e.key);
+        }
+    }
 
     /**
      * Returns the number of entries in this bucket.
@@ -47,9 +178,30 @@ public interface BucketInterface<K,V> {
 
     /**
      * Optional: returns all entries in this bucket.
-     * Useful for iteration or debugging.
+     * Useful for iteration or debugging. Every returned entry holds a value
+     * of the map, never an internal marker, but may be a copy.
      * @return list of entries
      */
     List<Entry<K, V>> getEntries();
 
+    /**
+     * Returns the Entry objects linked in this bucket, for wrappers that keep
+     * state on the entries themselves. Unlike {@link #getEntries()} these are
+     * never copies; in a lock-free bucket an entry being removed concurrently
+     * may hold an internal marker, so its value must not be read as a V.
+     * @return list of live entries
+     */
+    default List<Entry<K, V>> getLinkedEntries() {
+        return getEntries();
+    }
+
+    /**
+     * Migrates every entry of this bucket into the given table and seals the bucket.
+     * After this call all operations on this bucket are forwarded to {@code target},
+     * so writes racing with the migration are never lost. Entries are placed
+     * using their cached hash, without calling hashCode() again.
+     * @param target the table receiving the entries
+     */
+    void transferTo(ConcurrentCustomMap<K, V> target);
+
 }
@@ -0,0 +1,88 @@
+package concurrentmap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec defines how keys and values are written to and read from a binary
+ * snapshot (see {@link ResizableConcurrentMap#snapshot}).
+ * Implementations must read back exactly the bytes they wrote; the built-in
+ * codecs do not accept null.
+ *
+ * @param <T> type of the encoded objects
+ */
+public interface Codec<T> {
+
+    /**
+     * Writes one object.
+     * @param value the object to write
+     * @param out the destination
+     * @throws IOException if writing fails
+     */
+    void write(T value, DataOutput out) throws IOException;
+
+    /**
+     * Reads one object written by {@link #write}.
+     * @param in the source
+     * @return the decoded object
+     * @throws IOException if reading fails
+     */
+    T read(DataInput in) throws IOException;
+
+    /** Fixed 4-byte integers. */
+    Codec<Integer> INT = new Codec<>() {
+        @Override
+        public void write(Integer value, DataOutput out) throws IOException {
+            out.writeInt(value);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    /** Fixed 8-byte longs. */
+    Codec<Long> LONG = new Codec<>() {
+        @Override
+        public void write(Long value, DataOutput out) throws IOException {
+            out.writeLong(value);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    /** Length-prefixed byte arrays. */
+    Codec<byte[]> BYTES = new Codec<>() {
+        @Override
+        public void write(byte[] value, DataOutput out) throws IOException {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+
+        @Override
+        public byte[] read(DataInput in) throws IOException {
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            return value;
+        }
+    };
+
+    /** Length-prefixed UTF-8 strings of any length. */
+    Codec<String> STRING = new Codec<>() {
+        @Override
+        public void write(String value, DataOutput out) throws IOException {
+            BYTES.write(value.getBytes(StandardCharsets.UTF_8), out);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return new String(BYTES.read(in), StandardCharsets.UTF_8);
+        }
+    };
+}
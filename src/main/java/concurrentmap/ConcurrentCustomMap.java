@@ -1,21 +1,61 @@
 package concurrentmap;
 
+import utils.HashStrategy;
 import utils.HashUtils;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A thread-safe custom HashMap supporting modular bucket implementations.
  * Delegates all operations to BucketInterface<K,V>.
+ * <p>
+ * Buckets are allocated lazily: a slot stays empty until the first key lands
+ * in it, when a bucket is created and installed with a CAS. Lookups and
+ * removals on an empty slot return immediately, so sparse tables only pay
+ * for the buckets they use.
+ * <p>
+ * Iteration is weakly consistent and lazy: {@link #iterator()}, the
+ * {@link #entrySet()}, {@link #keySet()} and {@link #values()} views and
+ * {@link #spliterator()} walk the table bucket by bucket without copying it.
+ * The bulk operations ({@link #forEach(long, BiConsumer)}, {@code search},
+ * {@code reduce}, {@code removeIf}, {@code replaceAll}) split that walk by
+ * bucket range and run it on the fork/join pool above a size threshold.
  *
  * @param <K> key type
  * @param <V> value type
  */
-public class ConcurrentCustomMap<K, V> {
+public class ConcurrentCustomMap<K, V> implements MapInterface<K, V>, Iterable<Entry<K, V>> {
 
-    private final BucketInterface<K, V>[] buckets;
+    private final AtomicReferenceArray<BucketInterface<K, V>> buckets; // null until first write
     private final int numBuckets;
+    private final int mask; // numBuckets - 1 for power-of-two tables, -1 otherwise
+    private final HashStrategy hashStrategy;
     private final Supplier<? extends BucketInterface<K, V>> bucketSupplier;
+    private final LongAdder count; // striped entry counter, shared with resized tables
+    private final AtomicReference<SingleFlight<K, V>> flights = new AtomicReference<>(); // created on first load
 
     /**
      * Constructs a map with the given number of buckets using the provided bucket factory.
@@ -23,45 +63,438 @@ public class ConcurrentCustomMap<K, V> {
      * @param numBuckets     number of buckets
      * @param bucketSupplier factory to create bucket instances
      */
-    @SuppressWarnings("unchecked")
     public ConcurrentCustomMap(int numBuckets, Supplier<? extends BucketInterface<K, V>> bucketSupplier) {
+        this(numBuckets, bucketSupplier, HashStrategy.SPREAD);
+    }
+
+    /**
+     * Constructs a map with the given number of buckets, bucket factory and hash strategy.
+     * Power-of-two bucket counts select buckets with a mask, other counts use a modulo.
+     *
+     * @param numBuckets     number of buckets
+     * @param bucketSupplier factory to create bucket instances
+     * @param hashStrategy   function used to hash keys
+     */
+    public ConcurrentCustomMap(int numBuckets, Supplier<? extends BucketInterface<K, V>> bucketSupplier,
+                               HashStrategy hashStrategy) {
+        this(numBuckets, bucketSupplier, hashStrategy, new LongAdder());
+    }
+
+    /**
+     * Constructs a map that shares its entry counter with another table.
+     * Used when resizing, so the count stays correct while entries move
+     * between the old and the new table.
+     */
+    ConcurrentCustomMap(int numBuckets, Supplier<? extends BucketInterface<K, V>> bucketSupplier,
+                        HashStrategy hashStrategy, LongAdder count) {
         this.numBuckets = numBuckets;
+        this.mask = HashUtils.isPowerOfTwo(numBuckets) ? numBuckets - 1 : -1;
+        this.hashStrategy = hashStrategy;
         this.bucketSupplier = bucketSupplier;
-        this.buckets = new BucketInterface[numBuckets];
-        for (int i = 0; i < numBuckets; i++) {
-            buckets[i] = bucketSupplier.get();
+        this.count = count;
+        this.buckets = new AtomicReferenceArray<>(numBuckets);
+    }
+
+    /**
+     * Computes the bucket index for a given key hash.
+     */
+    private int getBucketIndex(int hash) {
+        return mask >= 0 ? hash & mask : hash % numBuckets;
+    }
+
+    /**
+     * Returns the bucket at the given index, installing a new one if the slot
+     * is empty. Threads racing to fill the same slot all end up with the
+     * bucket that won the CAS.
+     */
+    private BucketInterface<K, V> bucketAt(int index) {
+        BucketInterface<K, V> bucket = buckets.get(index);
+        if (bucket != null) {
+            return bucket;
+        }
+        BucketInterface<K, V> created = bucketSupplier.get();
+        if (buckets.compareAndSet(index, null, created)) {
+            return created;
+        }
+        return buckets.get(index); // lost the race, slots are never cleared
+    }
+
+    /**
+     * Inserts or updates a key-value pair. Null values are rejected, since a
+     * null previous value is what tells an insert from an update.
+     *
+     * @return the previous value, or null if the key was absent
+     * @throws NullPointerException if the value is null
+     */
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(value, "value");
+        int hash = hashStrategy.hash(key);
+        int index = getBucketIndex(hash);
+        V old = bucketAt(index).put(hash, key, value);
+        if (old == null) {
+            count.increment();
+        }
+        return old;
+    }
+
+    /**
+     * Stores every mapping of the given map. Keys are grouped by bucket
+     * first, so each bucket is locked once per call rather than once per key.
+     *
+     * @param m mappings to store
+     * @throws NullPointerException if any value is null; nothing is stored then
+     */
+    public void putAll(Map<? extends K, ? extends V> m) {
+        List<Entry<K, V>> batch = new ArrayList<>(m.size());
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            V value = Objects.requireNonNull(e.getValue(), "value");
+            batch.add(new Entry<>(hashStrategy.hash(e.getKey()), e.getKey(), value));
+        }
+        count.add(putBatch(batch));
+    }
+
+    /**
+     * Looks up several keys at once, visiting each bucket once per call.
+     *
+     * @param keys keys to look up
+     * @return the keys that are present, with their values
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        List<Entry<K, V>> batch = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            batch.add(new Entry<>(hashStrategy.hash(key), key, null));
+        }
+        getBatch(batch);
+        Map<K, V> result = new HashMap<>(Math.max(16, batch.size() * 4 / 3 + 1));
+        for (Entry<K, V> e : batch) {
+            if (e.value != null) {
+                result.put(e.key, e.value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores a batch of entries group by group. Also used by migrated
+     * buckets to forward a batch into this table.
+     *
+     * @return the number of keys added
+     */
+    int putBatch(List<Entry<K, V>> batch) {
+        int added = 0;
+        for (List<Entry<K, V>> group : groupByBucket(batch)) {
+            added += bucketAt(getBucketIndex(group.get(0).hash)).putAll(group);
+        }
+        return added;
+    }
+
+    /**
+     * Fills in the value of each batch entry, or null for absent keys.
+     */
+    void getBatch(List<Entry<K, V>> batch) {
+        for (List<Entry<K, V>> group : groupByBucket(batch)) {
+            BucketInterface<K, V> bucket = buckets.get(getBucketIndex(group.get(0).hash));
+            if (bucket != null) {
+                bucket.getAll(group);
+            }
+        }
+    }
+
+    /**
+     * Splits a batch into runs of entries sharing a bucket, in bucket order,
+     * by sorting (index, position) pairs packed into longs.
+     */
+    private List<List<Entry<K, V>>> groupByBucket(List<Entry<K, V>> batch) {
+        long[] order = new long[batch.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (long) getBucketIndex(batch.get(i).hash) << 32 | i;
+        }
+        Arrays.sort(order);
+        List<List<Entry<K, V>>> groups = new ArrayList<>();
+        List<Entry<K, V>> group = null;
+        int groupIndex = 0;
+        for (long packed : order) {
+            int index = (int) (packed >> 32);
+            if (group == null || index != groupIndex) {
+                group = new ArrayList<>();
+                groups.add(group);
+                groupIndex = index;
+            }
+            group.add(batch.get((int) packed));
+        }
+        return groups;
+    }
+
+    /**
+     * Adds the mapping only if the key is absent. A present key is answered
+     * without locking its bucket.
+     *
+     * @param key   the key
+     * @param value the value to associate with an absent key
+     * @return the current value, or null if the mapping was added
+     * @throws NullPointerException if the value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        Objects.requireNonNull(value, "value");
+        V current = get(key);
+        if (current != null) {
+            return current;
+        }
+        int hash = hashStrategy.hash(key);
+        current = bucketAt(getBucketIndex(hash)).putIfAbsent(hash, key, value);
+        if (current == null) {
+            count.increment();
         }
+        return current;
     }
 
     /**
-     * Computes the bucket index for a given key.
+     * Replaces the value of the key only if it currently equals
+     * {@code expectedValue}, as a single atomic step in the key's bucket.
+     *
+     * @param key           the key
+     * @param expectedValue the value the key must currently have
+     * @param newValue      the value to store
+     * @return true if the value was replaced
+     * @throws NullPointerException if either value is null
      */
-    private int getBucketIndex(K key) {
-        return HashUtils.getBucketIndex(key, numBuckets);
+    public boolean replace(K key, V expectedValue, V newValue) {
+        Objects.requireNonNull(expectedValue);
+        Objects.requireNonNull(newValue);
+        int hash = hashStrategy.hash(key);
+        BucketInterface<K, V> bucket = buckets.get(getBucketIndex(hash));
+        return bucket != null && bucket.replace(hash, key, expectedValue, newValue);
     }
 
     /**
-     * Inserts or updates a key-value pair.
+     * Removes the mapping only if the key currently maps to {@code expectedValue}.
+     *
+     * @param key           the key
+     * @param expectedValue the value the key must currently have
+     * @return true if the mapping was removed
      */
-    public void put(K key, V value) {
-        int index = getBucketIndex(key);
-        buckets[index].put(key, value);
+    public boolean remove(K key, V expectedValue) {
+        if (expectedValue == null) {
+            return false;
+        }
+        int hash = hashStrategy.hash(key);
+        BucketInterface<K, V> bucket = buckets.get(getBucketIndex(hash));
+        if (bucket == null || !bucket.remove(hash, key, expectedValue)) {
+            return false;
+        }
+        count.decrement();
+        return true;
     }
 
     /**
      * Retrieves a value by key.
      */
+    @Override
     public V get(K key) {
-        int index = getBucketIndex(key);
-        return buckets[index].get(key);
+        int hash = hashStrategy.hash(key);
+        BucketInterface<K, V> bucket = buckets.get(getBucketIndex(hash));
+        return bucket == null ? null : bucket.get(hash, key);
     }
 
     /**
      * Removes a key-value pair.
      */
+    @Override
     public V remove(K key) {
-        int index = getBucketIndex(key);
-        return buckets[index].remove(key);
+        int hash = hashStrategy.hash(key);
+        BucketInterface<K, V> bucket = buckets.get(getBucketIndex(hash));
+        if (bucket == null) {
+            return null;
+        }
+        V removed = bucket.remove(hash, key);
+        if (removed != null) {
+            count.decrement();
+        }
+        return removed;
+    }
+
+    /**
+     * Atomically replaces the mapping of the key with the result of the
+     * function, applied to the current value or null if there is none.
+     * A null result removes the mapping. The bucket applies the function
+     * while it holds the key's lock, or in a CAS loop for lock-free buckets,
+     * where it may run more than once; either way it must not touch the map.
+     *
+     * @param key               the key
+     * @param remappingFunction computes the new value from the key and the current value
+     * @return the new value, or null if the key is now absent
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        return doCompute(key, remappingFunction);
+    }
+
+    /**
+     * Maps the key to the result of the function if it is absent. A present
+     * key is answered without locking its bucket.
+     *
+     * @param key             the key
+     * @param mappingFunction computes the value of an absent key, or null to leave it absent
+     * @return the current or computed value, or null if the key stays absent
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        return doCompute(key, (k, old) -> old != null ? old : mappingFunction.apply(k));
+    }
+
+    /**
+     * Replaces the value of a present key with the result of the function;
+     * a null result removes the mapping.
+     *
+     * @param key               the key
+     * @param remappingFunction computes the new value from the key and the current value
+     * @return the new value, or null if the key is absent
+     */
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        if (get(key) == null) {
+            return null;
+        }
+        return doCompute(key, (k, old) -> old == null ? null : remappingFunction.apply(k, old));
+    }
+
+    /**
+     * Maps an absent key to the given value, or combines the current value
+     * with it; a null result removes the mapping.
+     *
+     * @param key               the key
+     * @param value             the value to map an absent key to, or to combine with the current one
+     * @param remappingFunction combines the current value with {@code value}
+     * @return the new value, or null if the key is now absent
+     */
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        return doCompute(key, (k, old) -> old == null ? value : remappingFunction.apply(old, value));
+    }
+
+    /**
+     * Runs a compute in the key's bucket and adjusts the entry counter by
+     * whether the last run of the function, the one that took effect, added
+     * or removed the mapping.
+     */
+    private V doCompute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        int hash = hashStrategy.hash(key);
+        boolean[] presence = new boolean[2]; // before, after
+        V result = bucketAt(getBucketIndex(hash)).compute(hash, key, (k, old) -> {
+            V value = remappingFunction.apply(k, old);
+            presence[0] = old != null;
+            presence[1] = value != null;
+            return value;
+        });
+        if (presence[0] != presence[1]) {
+            if (presence[1]) {
+                count.increment();
+            } else {
+                count.decrement();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value of the key, loading it on a miss. Concurrent callers
+     * missing the same key share one load: the first runs the loader and
+     * stores its result, the others wait for it. The bucket is not locked
+     * while the loader runs. A loader must not load its own key again.
+     *
+     * @param key    the key
+     * @param loader computes the value of a missing key; null stores nothing
+     * @return the current or loaded value, or null if the loader returned null
+     * @throws RuntimeException thrown by the loader, to every caller sharing the load
+     */
+    public V getOrLoad(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        SingleFlight<K, V> f = flights.get();
+        if (f == null) {
+            flights.compareAndSet(null, new SingleFlight<>());
+            f = flights.get();
+        }
+        return f.load(key, loader, this::get, this::put);
+    }
+
+    /**
+     * Returns the bucket responsible for the given key hash.
+     * Used by migrated buckets to forward operations into this table,
+     * so an empty slot gets its bucket installed.
+     */
+    BucketInterface<K, V> getBucket(int hash) {
+        return bucketAt(getBucketIndex(hash));
+    }
+
+    /**
+     * Returns the bucket responsible for the given key hash, or null if its
+     * slot is still empty.
+     */
+    BucketInterface<K, V> peekBucket(int hash) {
+        return buckets.get(getBucketIndex(hash));
+    }
+
+    /**
+     * Returns the entry holding the key, or null. Searches a copy of the
+     * bucket's linked entries, so it serves wrappers that need the Entry
+     * itself after a write rather than the read path.
+     */
+    Entry<K, V> getEntry(K key) {
+        int hash = hashStrategy.hash(key);
+        BucketInterface<K, V> bucket = buckets.get(getBucketIndex(hash));
+        if (bucket != null) {
+            for (Entry<K, V> e : bucket.getLinkedEntries()) {
+                if (e.keyEquals(hash, key)) {
+                    return e;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the entries of the bucket at the given index, or an empty list
+     * if its slot is still empty. Used to walk the table range by range.
+     */
+    List<Entry<K, V>> bucketEntries(int index) {
+        BucketInterface<K, V> bucket = buckets.get(index);
+        return bucket == null ? List.of() : bucket.getEntries();
+    }
+
+    /**
+     * Returns the Entry objects linked in the bucket at the given index, for
+     * wrappers that keep state on them, such as a clock hand.
+     *
+     * @see BucketInterface#getLinkedEntries()
+     */
+    List<Entry<K, V>> linkedEntries(int index) {
+        BucketInterface<K, V> bucket = buckets.get(index);
+        return bucket == null ? List.of() : bucket.getLinkedEntries();
+    }
+
+    /**
+     * Migrates the bucket at the given index into the target table,
+     * leaving a forwarding marker behind. An empty slot is sealed with a
+     * {@link ForwardingBucket} so no bucket is allocated for it.
+     */
+    void transferBucket(int index, ConcurrentCustomMap<K, V> target) {
+        BucketInterface<K, V> bucket = buckets.get(index);
+        if (bucket == null) {
+            if (buckets.compareAndSet(index, null, new ForwardingBucket<>(target))) {
+                return;
+            }
+            bucket = buckets.get(index); // a writer installed a bucket first
+        }
+        bucket.transferTo(target);
     }
 
     /**
@@ -71,28 +504,387 @@ public class ConcurrentCustomMap<K, V> {
         return numBuckets;
     }
 
+    /**
+     * Returns the number of entries, read from the striped counter without
+     * walking any bucket.
+     * Alias for {@code size(SizeMode.APPROXIMATE)}.
+     */
+    @Override
+    public int size() {
+        return size(SizeMode.APPROXIMATE);
+    }
+
+    /**
+     * Returns the number of entries using the given counting mode.
+     *
+     * @param mode {@link SizeMode#APPROXIMATE} sums the striped counter,
+     *             {@link SizeMode#EXACT} walks every bucket
+     * @return number of entries
+     */
+    public int size(SizeMode mode) {
+        if (mode == SizeMode.EXACT) {
+            int total = 0;
+            for (int load : getBucketLoadDistribution()) {
+                total += load;
+            }
+            return total;
+        }
+        long sum = count.sum();
+        return sum < 0 ? 0 : (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the counter shared with tables created by a resize.
+     */
+    LongAdder getCounter() {
+        return count;
+    }
+
     /**
      * Returns the current load (number of entries) per bucket.
-     * Useful for benchmarking or visualization.
+     * Useful for benchmarking or visualization. Empty slots report 0.
      */
     public int[] getBucketLoadDistribution() {
         int[] loads = new int[numBuckets];
         for (int i = 0; i < numBuckets; i++) {
-            loads[i] = buckets[i].size();
+            BucketInterface<K, V> bucket = buckets.get(i);
+            loads[i] = bucket == null ? 0 : bucket.size();
         }
         return loads;
     }
 
     /**
-     * Returns all entries in the map as a list.
-     * Useful for rehashing during resize.
+     * Returns a weakly consistent iterator over the entries, walking one
+     * bucket at a time. Only the entries of the current bucket are held, so
+     * a full scan allocates in proportion to the largest bucket, not to the
+     * map. The iterator never throws {@link java.util.ConcurrentModificationException}:
+     * it reflects each bucket as it was when the iterator reached it, and may
+     * or may not see writes made after it was created.
+     * {@link Iterator#remove()} removes the last returned key from the map.
      */
-    public List<Entry<K, V>> entrySet() {
-        List<Entry<K, V>> entries = new java.util.ArrayList<>();
-        for (BucketInterface<K, V> bucket : buckets) {
-            entries.addAll(bucket.getEntries());
+    @Override
+    public Iterator<Entry<K, V>> iterator() {
+        return new EntryIterator(0, numBuckets);
+    }
+
+    /**
+     * Returns a weakly consistent spliterator over the entries that splits
+     * by bucket index range.
+     */
+    @Override
+    public Spliterator<Entry<K, V>> spliterator() {
+        return new EntrySpliterator(0, numBuckets);
+    }
+
+    /**
+     * Returns a view of the entries, backed by the map and iterated as by
+     * {@link #iterator()}. Nothing is copied up front.
+     */
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return ConcurrentCustomMap.this.iterator();
+            }
+
+            @Override
+            public Spliterator<Entry<K, V>> spliterator() {
+                return ConcurrentCustomMap.this.spliterator();
+            }
+
+            @Override
+            public int size() {
+                return ConcurrentCustomMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Returns a view of the keys, backed by the map. Removing a key from the
+     * view removes its mapping.
+     */
+    public Set<K> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<K> iterator() {
+                Iterator<Entry<K, V>> it = ConcurrentCustomMap.this.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public K next() {
+                        return it.next().getKey();
+                    }
+
+                    @Override
+                    public void remove() {
+                        it.remove();
+                    }
+                };
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean contains(Object o) {
+                return get((K) o) != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean remove(Object o) {
+                return ConcurrentCustomMap.this.remove((K) o) != null;
+            }
+
+            @Override
+            public int size() {
+                return ConcurrentCustomMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Returns a view of the values, backed by the map.
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                Iterator<Entry<K, V>> it = ConcurrentCustomMap.this.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return it.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        it.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ConcurrentCustomMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Streams the entries, in parallel on the common {@link java.util.concurrent.ForkJoinPool}
+     * if the map holds at least {@code parallelismThreshold} entries. Use
+     * {@link Long#MAX_VALUE} to stay sequential and 1 for maximal parallelism.
+     */
+    private Stream<Entry<K, V>> stream(long parallelismThreshold) {
+        return StreamSupport.stream(spliterator(), size() >= parallelismThreshold);
+    }
+
+    /**
+     * Performs the action for each mapping, splitting the work by bucket
+     * range across the fork/join pool once the map is large enough.
+     * Weakly consistent, like {@link #iterator()}.
+     *
+     * @param parallelismThreshold number of entries from which the work runs in parallel
+     * @param action               the action, which may run on several threads at once
+     */
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        stream(parallelismThreshold).forEach(e -> action.accept(e.getKey(), e.getValue()));
+    }
+
+    /**
+     * Returns a non-null result of applying the function to some mapping,
+     * or null if there is none. Once a result is found, the remaining work
+     * is abandoned.
+     *
+     * @param parallelismThreshold number of entries from which the search runs in parallel
+     * @param searchFunction       returns a result, or null to continue searching
+     * @param <U>                  result type
+     * @return a non-null result, or null
+     */
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        return stream(parallelismThreshold)
+                .<U>map(e -> searchFunction.apply(e.getKey(), e.getValue()))
+                .filter(Objects::nonNull)
+                .findAny()
+                .orElse(null);
+    }
+
+    /**
+     * Transforms every mapping and combines the non-null results.
+     *
+     * @param parallelismThreshold number of entries from which the reduction runs in parallel
+     * @param transformer          maps an entry to a value, or null to skip it
+     * @param reducer              associative function combining two values
+     * @param <U>                  result type
+     * @return the combined value, or null if every entry was skipped
+     */
+    public <U> U reduce(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> transformer,
+                        BiFunction<? super U, ? super U, ? extends U> reducer) {
+        return stream(parallelismThreshold)
+                .<U>map(e -> transformer.apply(e.getKey(), e.getValue()))
+                .filter(Objects::nonNull)
+                .reduce((a, b) -> reducer.apply(a, b))
+                .orElse(null);
+    }
+
+    /**
+     * Removes every mapping that matches the filter. A mapping is removed
+     * only if it still holds the value the filter accepted.
+     *
+     * @param parallelismThreshold number of entries from which the scan runs in parallel
+     * @param filter               selects the mappings to remove
+     * @return true if any mapping was removed
+     */
+    public boolean removeIf(long parallelismThreshold, BiPredicate<? super K, ? super V> filter) {
+        return stream(parallelismThreshold)
+                .map(e -> {
+                    V value = e.getValue();
+                    return filter.test(e.getKey(), value) && remove(e.getKey(), value);
+                })
+                .reduce(false, Boolean::logicalOr);
+    }
+
+    /**
+     * Replaces each value with the result of the function. Each update is a
+     * {@link #replace(Object, Object, Object)} retried with the current value
+     * if a concurrent writer changed it, so no write is overwritten blindly.
+     *
+     * @param parallelismThreshold number of entries from which the update runs in parallel
+     * @param function             computes the new value; must not return null
+     */
+    public void replaceAll(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends V> function) {
+        stream(parallelismThreshold).forEach(e -> {
+            K key = e.getKey();
+            V old = e.getValue();
+            while (old != null) {
+                V value = function.apply(key, old);
+                if (value == null) {
+                    throw new NullPointerException("replaceAll function returned null");
+                }
+                if (replace(key, old, value)) {
+                    break;
+                }
+                old = get(key); // changed concurrently, or removed
+            }
+        });
+    }
+
+    /**
+     * Walks the buckets in [index, end), fetching the entries of one
+     * non-empty bucket at a time.
+     */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+        private int index; // next bucket to fetch
+        private final int end;
+        private Iterator<Entry<K, V>> current = Collections.emptyIterator();
+        private Entry<K, V> last;
+
+        EntryIterator(int index, int end) {
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (index >= end) {
+                    return false;
+                }
+                current = bucketEntries(index++).iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return last = current.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentCustomMap.this.remove(last.getKey());
+            last = null;
+        }
+    }
+
+    /**
+     * Spliterator over a range of bucket indexes. Splitting halves the range,
+     * so every part walks its own buckets without coordination.
+     */
+    private class EntrySpliterator implements Spliterator<Entry<K, V>> {
+        private int index;
+        private final int end;
+        private Iterator<Entry<K, V>> current = Collections.emptyIterator();
+
+        EntrySpliterator(int index, int end) {
+            this.index = index;
+            this.end = end;
         }
-        return entries;
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Entry<K, V>> action) {
+            while (!current.hasNext()) {
+                if (index >= end) {
+                    return false;
+                }
+                current = bucketEntries(index++).iterator();
+            }
+            action.accept(current.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Entry<K, V>> action) {
+            current.forEachRemaining(action);
+            for (; index < end; index++) {
+                bucketEntries(index).forEach(action);
+            }
+        }
+
+        @Override
+        public Spliterator<Entry<K, V>> trySplit() {
+            if (current.hasNext()) {
+                return null; // only split on bucket boundaries
+            }
+            int mid = (index + end) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            Spliterator<Entry<K, V>> prefix = new EntrySpliterator(index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (long) size() * (end - index) / numBuckets;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.CONCURRENT;
+        }
+    }
+
+    /**
+     * Returns the strategy used to hash keys.
+     */
+    public HashStrategy getHashStrategy() {
+        return hashStrategy;
     }
 
     /**
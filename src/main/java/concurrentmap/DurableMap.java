@@ -0,0 +1,226 @@
+package concurrentmap;
+
+import utils.HashStrategy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Durability wrapper that logs every put and remove to a
+ * {@link WriteAheadLog} before acknowledging it, and replays the log into
+ * the wrapped map when opened.
+ * <p>
+ * Records are encoded with the given codecs before any lock is taken. The
+ * key's stripe of a {@link StripedLocks} pool is then held while the record
+ * is queued and the map updated, so writes to one key reach the log in the
+ * same order they reach the map and replay rebuilds the same state. Writers
+ * of different stripes queue concurrently and share the flusher's fsyncs.
+ * <p>
+ * {@link WriteOrder} chooses when the map sees a write: after it is durable,
+ * so readers never observe a write that could be lost, or before, so the
+ * stripe is held only for the in-memory update and waiting for the fsync
+ * happens outside it. Either way put and remove return only once the write
+ * is durable.
+ * <p>
+ * The log only grows; take a {@link ResizableConcurrentMap#snapshot} and start
+ * a new log to compact it.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class DurableMap<K, V> implements MapInterface<K, V>, AutoCloseable {
+
+    /** When a write is applied to the map relative to making it durable. */
+    public enum WriteOrder {
+        /** Apply once the record is on disk; the stripe is held across the fsync. */
+        LOG_FIRST,
+        /** Apply as soon as the record is queued, then wait for the fsync. */
+        APPLY_FIRST
+    }
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private final MapInterface<K, V> map;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final WriteOrder order;
+    private final StripedLocks locks = new StripedLocks();
+    private final WriteAheadLog log;
+
+    /**
+     * Opens a durable view of the map, applying writes after they are logged.
+     *
+     * @param map        map holding the data, usually empty
+     * @param logFile    write-ahead log, replayed into the map if it exists
+     * @param keyCodec   codec for keys
+     * @param valueCodec codec for values
+     * @throws IOException if the log cannot be opened
+     */
+    public DurableMap(MapInterface<K, V> map, Path logFile, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        this(map, logFile, keyCodec, valueCodec, WriteOrder.LOG_FIRST);
+    }
+
+    /**
+     * Opens a durable view of the map with the given write order.
+     *
+     * @param map        map holding the data, usually empty
+     * @param logFile    write-ahead log, replayed into the map if it exists
+     * @param keyCodec   codec for keys
+     * @param valueCodec codec for values
+     * @param order      whether writes are applied before or after the fsync
+     * @throws IOException if the log cannot be opened
+     */
+    public DurableMap(MapInterface<K, V> map, Path logFile, Codec<K> keyCodec, Codec<V> valueCodec,
+                      WriteOrder order) throws IOException {
+        this.map = map;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.order = order;
+        try {
+            this.log = WriteAheadLog.open(logFile, this::replay);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void replay(byte[] record) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            byte type = in.readByte();
+            K key = keyCodec.read(in);
+            if (type == PUT) {
+                map.put(key, valueCodec.read(in));
+            } else {
+                map.remove(key);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] encode(byte type, K key, V value) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            keyCodec.write(key, out);
+            if (type == PUT) {
+                valueCodec.write(value, out);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Logs and applies a put; returns once it is durable.
+     *
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    @Override
+    public V put(K key, V value) {
+        byte[] record = encode(PUT, key, value);
+        StripedLocks.PaddedLock lock = locks.stripe(HashStrategy.SPREAD.hash(key));
+        CompletableFuture<Void> commit;
+        V old;
+        lock.lock();
+        try {
+            commit = log.append(record);
+            if (order == WriteOrder.LOG_FIRST) {
+                WriteAheadLog.await(commit);
+            }
+            old = map.put(key, value);
+        } finally {
+            lock.unlock();
+        }
+        WriteAheadLog.await(commit);
+        return old;
+    }
+
+    /**
+     * Retrieves a value by key from the wrapped map.
+     */
+    @Override
+    public V get(K key) {
+        return map.get(key);
+    }
+
+    /**
+     * Logs and applies a remove; returns once it is durable. Removes of
+     * absent keys are logged too, since whether the key is present can only
+     * be known under the stripe lock.
+     *
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    @Override
+    public V remove(K key) {
+        byte[] record = encode(REMOVE, key, null);
+        StripedLocks.PaddedLock lock = locks.stripe(HashStrategy.SPREAD.hash(key));
+        CompletableFuture<Void> commit;
+        V removed;
+        lock.lock();
+        try {
+            commit = log.append(record);
+            if (order == WriteOrder.LOG_FIRST) {
+                WriteAheadLog.await(commit);
+            }
+            removed = map.remove(key);
+        } finally {
+            lock.unlock();
+        }
+        WriteAheadLog.await(commit);
+        return removed;
+    }
+
+    /**
+     * Returns the number of entries of the wrapped map.
+     */
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns the write-ahead log, for its batch size and fsync metrics.
+     */
+    public WriteAheadLog getLog() {
+        return log;
+    }
+
+    /**
+     * Returns the wrapped map.
+     */
+    public MapInterface<K, V> getMap() {
+        return map;
+    }
+
+    /**
+     * Commits pending writes and closes the log. Later writes throw
+     * {@link IllegalStateException}.
+     *
+     * @throws IOException if the log cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        int stripes = locks.getStripeCount();
+        for (int s = 0; s < stripes; s++) {
+            locks.stripe(s).lock();
+        }
+        try {
+            log.close();
+        } finally {
+            for (int s = stripes - 1; s >= 0; s--) {
+                locks.stripe(s).unlock();
+            }
+        }
+    }
+}
@@ -8,16 +8,21 @@ package concurrentmap;
  */
 
 public class Entry<K, V> {
+    final int hash; // cached hash of the key, reused for lookups and resizing
     final K key;
     volatile V value;
-    Entry<K, V> next;
+    volatile Entry<K, V> next; // volatile so lock-free buckets can traverse and CAS it
+    volatile boolean referenced; // access bit, set by reads and cleared by BoundedCache's clock hand
+    volatile long expiresAt; // nanoTime deadline set by ExpiringMap, 0 if the entry never expires
 
     /**
      * Constructs a new Entry with the given key and value.
+     * @param hash  the hash of the key, as computed by the owning map
      * @param key   the key for this entry
      * @param value the value associated with the key
      */
-    public Entry(K key, V value) {
+    public Entry(int hash, K key, V value) {
+        this.hash = hash;
         this.key = key;
         this.value = value;
         this.next = null; // next to be set in case of collision
@@ -25,11 +30,44 @@ public class Entry<K, V> {
 
     /**
      * Utility method to check if a given key equals this entry's key.
-     * @param otherKey the key to compare
+     * Compares the cached hashes first, so equals() only runs on a hash match.
+     * @param otherHash the hash of the key to compare
+     * @param otherKey  the key to compare
      * @return true if keys are equal
      */
-    public boolean keyEquals(K otherKey) {
-        return key == null ? otherKey == null : key.equals(otherKey);
+    public boolean keyEquals(int otherHash, K otherKey) {
+        if (hash != otherHash) {
+            return false;
+        }
+        return key == otherKey || (key != null && key.equals(otherKey));
+    }
+
+    /**
+     * Returns the value for a read, setting the access bit on the way.
+     * The bit is only written while clear, so repeated reads of a hot entry
+     * do not keep dirtying its cache line. An entry past its expiry deadline
+     * reads as absent.
+     *
+     * @return the value, or null if the entry has expired
+     */
+    V access() {
+        long deadline = expiresAt;
+        if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+            return null;
+        }
+        if (!referenced) {
+            referenced = true;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the cached hash of the key.
+     *
+     * @return the hash
+     */
+    public int getHash() {
+        return hash;
     }
 
     /**
@@ -0,0 +1,285 @@
+package concurrentmap;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Map on top of a {@link ConcurrentCustomMap} whose entries expire a fixed
+ * time after they were written, or after they were last read.
+ * <p>
+ * Each entry carries its deadline ({@link Entry#expiresAt}). Reads check it
+ * in the bucket lookup itself and treat an expired entry as absent, so a
+ * stale value is never returned however late its removal runs; with
+ * {@link Expiry#AFTER_ACCESS}, {@link #get} then pushes the deadline back.
+ * <p>
+ * Removal is done by a {@link TimerWheel} rather than by scanning the table.
+ * A put that adds a key queues a timer for its entry on a lock-free queue.
+ * Writers then try to take the maintenance lock; the one that gets it links
+ * the queued timers into the wheel and advances it, removing the entries
+ * that are due. Timers of entries that were rewritten or read since are
+ * simply rescheduled, so neither puts nor reads ever touch the wheel, and
+ * the work per entry is constant no matter how large the map is. An
+ * entry's timer is kept in a side map keyed by the entry, so
+ * {@link Entry} itself holds nothing for expiry but the deadline.
+ * <p>
+ * Expired entries still count towards {@link #size()} until they are
+ * removed. Without writes the wheel does not advance; call
+ * {@link #cleanUp()} to remove due entries from an idle map.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class ExpiringMap<K, V> implements MapInterface<K, V> {
+
+    /** What restarts an entry's time to live. */
+    public enum Expiry {
+        /** Entries expire a fixed time after their last put. */
+        AFTER_WRITE,
+        /** Entries expire a fixed time after their last put or get. */
+        AFTER_ACCESS
+    }
+
+    private final ConcurrentCustomMap<K, V> map;
+    // keyed by entry identity, since Entry keeps Object's equals and hashCode
+    private final ConcurrentCustomMap<Entry<K, V>, TimerWheel.Node<K, V>> timers;
+    private final long ttlNanos;
+    private final Expiry expiry;
+    private final ConcurrentLinkedQueue<TimerWheel.Node<K, V>> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock maintenanceLock = new ReentrantLock();
+    private final TimerWheel<K, V> wheel = new TimerWheel<>(System.nanoTime()); // guarded by maintenanceLock
+    private final LongAdder expirations = new LongAdder();
+    private final SingleFlight<K, V> flights = new SingleFlight<>();
+
+    /**
+     * Creates an empty map whose entries live for the given duration.
+     *
+     * @param numBuckets     number of buckets
+     * @param bucketSupplier factory to create bucket instances
+     * @param duration       default time to live
+     * @param unit           unit of {@code duration}
+     * @param expiry         whether reads restart the time to live
+     */
+    public ExpiringMap(int numBuckets, Supplier<? extends BucketInterface<K, V>> bucketSupplier,
+                       long duration, TimeUnit unit, Expiry expiry) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("duration must be positive: " + duration);
+        }
+        this.map = new ConcurrentCustomMap<>(numBuckets, bucketSupplier);
+        this.timers = new ConcurrentCustomMap<>(numBuckets, LockFreeBucket::new);
+        this.ttlNanos = unit.toNanos(duration);
+        this.expiry = expiry;
+    }
+
+    /**
+     * Returns the deadline {@code nanos} after {@code now}. The lowest bit is
+     * forced on, since a deadline of 0 means the entry never expires.
+     */
+    static long deadline(long now, long nanos) {
+        return (now + nanos) | 1;
+    }
+
+    /**
+     * Inserts or updates a mapping with the default time to live.
+     *
+     * @return the previous value, or null if the key was absent or expired
+     */
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, ttlNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Inserts or updates a mapping that lives for the given duration,
+     * measured from now and, with {@link Expiry#AFTER_ACCESS}, from each read.
+     *
+     * @return the previous value, or null if the key was absent or expired
+     */
+    public V put(K key, V value, long duration, TimeUnit unit) {
+        long nanos = unit.toNanos(duration);
+        long idle = expiry == Expiry.AFTER_ACCESS ? nanos : 0;
+        long now = System.nanoTime();
+        long deadline = deadline(now, nanos);
+        // the deadline goes in before the value, so an expiry never sees the new value with the old deadline
+        Entry<K, V> e = map.getEntry(key);
+        long previous = 0;
+        if (e != null) {
+            previous = e.expiresAt;
+            TimerWheel.Node<K, V> t = timers.get(e);
+            if (t != null) {
+                t.idleNanos = idle;
+            }
+            e.expiresAt = deadline;
+        }
+        V old = map.put(key, value);
+        if (old == null || e == null) {
+            // a new entry, which reads as never expiring until its deadline is set here
+            e = map.getEntry(key);
+            if (e != null) {
+                e.expiresAt = deadline;
+                if (old == null) {
+                    TimerWheel.Node<K, V> t = new TimerWheel.Node<>(e, idle);
+                    if (timers.putIfAbsent(e, t) == null) {
+                        pending.offer(t);
+                    }
+                }
+            }
+        } else if (previous != 0 && now - previous >= 0) {
+            old = null; // overwrote an expired entry whose timer has not run yet
+        }
+        maintain();
+        return old;
+    }
+
+    /**
+     * Retrieves a value by key, or null if it is absent or has expired.
+     * With {@link Expiry#AFTER_ACCESS} a hit restarts the entry's time to live.
+     */
+    @Override
+    public V get(K key) {
+        V value = map.get(key);
+        if (value != null && expiry == Expiry.AFTER_ACCESS) {
+            Entry<K, V> e = map.getEntry(key);
+            TimerWheel.Node<K, V> t = e == null ? null : timers.get(e);
+            if (t != null) {
+                e.expiresAt = deadline(System.nanoTime(), t.idleNanos);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value of the key, loading it once for all concurrent
+     * callers if it is absent or expired. The loaded value gets the default
+     * time to live; a value another caller loaded meanwhile is read through
+     * {@link #get}, so it is treated like any other read.
+     *
+     * @see ConcurrentCustomMap#getOrLoad
+     */
+    public V getOrLoad(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        return value != null ? value : flights.load(key, loader, this::get, this::put);
+    }
+
+    /**
+     * Removes a mapping and cancels its timer.
+     *
+     * @return the removed value, or null if the key was absent or expired
+     */
+    @Override
+    public V remove(K key) {
+        Entry<K, V> e = map.getEntry(key);
+        if (e != null) {
+            TimerWheel.Node<K, V> t = timers.remove(e);
+            if (t != null) {
+                t.cancelled = true; // before the unlink, so the timer never outlives its entry
+            }
+        }
+        V removed = map.remove(key);
+        if (e != null) {
+            long deadline = e.expiresAt;
+            if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                removed = null;
+            }
+        }
+        maintain();
+        return removed;
+    }
+
+    /**
+     * Returns the number of entries, including expired entries whose timer
+     * has not run yet.
+     */
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Removes every entry that is due, waiting for a writer that is already
+     * doing so.
+     */
+    public void cleanUp() {
+        maintenanceLock.lock();
+        try {
+            runMaintenance();
+        } finally {
+            maintenanceLock.unlock();
+        }
+    }
+
+    /**
+     * Advances the wheel unless another writer is already at it.
+     */
+    private void maintain() {
+        if (maintenanceLock.tryLock()) {
+            try {
+                runMaintenance();
+            } finally {
+                maintenanceLock.unlock();
+            }
+        }
+    }
+
+    private void runMaintenance() {
+        TimerWheel.Node<K, V> t;
+        while ((t = pending.poll()) != null) {
+            if (!t.cancelled) {
+                wheel.schedule(t, t.entry.expiresAt);
+            }
+        }
+        wheel.advance(System.nanoTime(), this::expire);
+    }
+
+    /**
+     * Removes the entry of a due timer. The deadline is checked again inside
+     * a compute, under the bucket lock or before the value CAS, so checking
+     * and unlinking are one step for writers of the key. A put sets its new
+     * deadline before its value, so a rewrite racing with the drain is
+     * either seen as not due and kept, with its timer going back into the
+     * wheel, or comes after the unlink and inserts the key again. A timer
+     * that is not rescheduled leaves the side map with its entry.
+     */
+    private void expire(TimerWheel.Node<K, V> t) {
+        Entry<K, V> e = t.entry;
+        long deadline = e.expiresAt;
+        boolean[] expired = new boolean[1];
+        map.compute(e.key, (k, v) -> {
+            // v is e's value only while e is the entry of the key; a cancelled timer's entry is gone
+            expired[0] = v != null && v == e.value && !t.cancelled && System.nanoTime() - e.expiresAt >= 0;
+            return expired[0] ? null : v;
+        });
+        if (e.expiresAt != deadline && !expired[0] && !t.cancelled) {
+            wheel.schedule(t, e.expiresAt);
+            return;
+        }
+        timers.remove(e, t);
+        if (expired[0]) {
+            expirations.increment();
+        }
+    }
+
+    /**
+     * Returns the number of entries removed by their timer.
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    /**
+     * Returns the number of entries that have a timer in the side map.
+     */
+    int timerCount() {
+        return timers.size(SizeMode.EXACT);
+    }
+
+    /**
+     * Returns the underlying map.
+     */
+    public ConcurrentCustomMap<K, V> getMap() {
+        return map;
+    }
+}
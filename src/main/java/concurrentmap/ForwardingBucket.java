@@ -0,0 +1,73 @@
+package concurrentmap;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Placeholder installed in a slot that was still empty when its table was
+ * resized. It holds no entries, so there is nothing to copy and every
+ * operation goes straight to the bucket of the target table.
+ * <p>
+ * Sealing the empty slot keeps a late writer from allocating a bucket in the
+ * old table after the slot has been migrated.
+ *
+ * @param <K> type of key
+ * @param <V> type of value
+ */
+final class ForwardingBucket<K, V> implements BucketInterface<K, V> {
+
+    /** Table that owns the keys of this slot. */
+    private final ConcurrentCustomMap<K, V> target;
+
+    /**
+     * Constructs a placeholder forwarding to the given table.
+     *
+     * @param target the table receiving operations for this slot
+     */
+    ForwardingBucket(ConcurrentCustomMap<K, V> target) {
+        this.target = target;
+    }
+
+    @Override
+    public V put(int hash, K key, V value) {
+        return target.getBucket(hash).put(hash, key, value);
+    }
+
+    @Override
+    public V get(int hash, K key) {
+        BucketInterface<K, V> bucket = target.peekBucket(hash);
+        return bucket == null ? null : bucket.get(hash, key);
+    }
+
+    @Override
+    public V remove(int hash, K key) {
+        BucketInterface<K, V> bucket = target.peekBucket(hash);
+        return bucket == null ? null : bucket.remove(hash, key);
+    }
+
+    @Override
+    public V compute(int hash, K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return target.getBucket(hash).compute(hash, key, remappingFunction);
+    }
+
+    @Override
+    public int size() {
+        return 0;
+    }
+
+    @Override
+    public int getLoad() {
+        return 0;
+    }
+
+    @Override
+    public List<Entry<K, V>> getEntries() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void transferTo(ConcurrentCustomMap<K, V> target) {
+        // already sealed, nothing to move
+    }
+}
@@ -0,0 +1,62 @@
+package concurrentmap;
+
+/**
+ * Marker left behind in a bucket whose entries have been migrated to a larger
+ * table during an incremental resize.
+ * <p>
+ * A bucket is sealed by installing a ForwardingNode, after which its entries
+ * are copied into {@link #target}. Until the copy finishes, writers that hit
+ * the marker wait in {@link #awaitTarget()}; once complete, every operation
+ * on the old bucket is redirected to the target table.
+ *
+ * @param <K> type of key
+ * @param <V> type of value
+ */
+final class ForwardingNode<K, V> extends Entry<K, V> {
+
+    /** Hash of forwarding markers; real entries never have a negative hash. */
+    static final int MOVED = -1;
+
+    /** Table that now owns the entries of the sealed bucket. */
+    final ConcurrentCustomMap<K, V> target;
+
+    /** Set once every entry of the sealed bucket is visible in the target. */
+    private volatile boolean complete;
+
+    /**
+     * Constructs a forwarding marker pointing at the given table.
+     *
+     * @param target the table receiving the migrated entries
+     */
+    ForwardingNode(ConcurrentCustomMap<K, V> target) {
+        super(MOVED, null, null);
+        this.target = target;
+    }
+
+    /**
+     * Returns true once the migration guarded by this marker has finished.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Publishes the end of the migration, releasing any waiting writers.
+     */
+    void complete() {
+        complete = true;
+    }
+
+    /**
+     * Waits for the migration to finish and returns the target table.
+     * Migration of a single bucket is short, so waiting threads spin.
+     *
+     * @return the table that now owns the migrated entries
+     */
+    ConcurrentCustomMap<K, V> awaitTarget() {
+        while (!complete) {
+            Thread.onSpinWait();
+        }
+        return target;
+    }
+}
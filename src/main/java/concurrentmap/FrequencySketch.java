@@ -0,0 +1,102 @@
+package concurrentmap;
+
+import utils.HashUtils;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-min sketch estimating how often keys were seen recently, used by
+ * {@link BoundedCache} to decide which keys are worth admitting.
+ * <p>
+ * Counters are 4 bits wide and packed sixteen to a {@code long}, four
+ * counters per cached entry, so the sketch costs two bytes per entry. A key
+ * maps to one counter in each of four rows, picked by differently seeded
+ * hashes; its estimate is the smallest of the four, which only overestimates
+ * on collisions. Counters saturate at 15. Once the number of increments
+ * reaches ten times the cache size, every counter is halved, so old
+ * popularity fades and keys that were hot long ago cannot keep newcomers out
+ * forever.
+ * <p>
+ * Increments update the words with CAS and never lock. Aging walks the table
+ * with CAS too, so increments racing with it are kept rather than lost.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L; // clears the bit shifted in from the next counter
+    private static final int MAX_COUNT = 15;
+
+    private final AtomicLongArray table;
+    private final int mask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    /**
+     * Creates a sketch sized for a cache of the given capacity.
+     *
+     * @param maximumSize number of entries the cache holds
+     */
+    FrequencySketch(long maximumSize) {
+        int words = 16;
+        while (words < maximumSize / 4 && words < 1 << 26) {
+            words <<= 1;
+        }
+        this.table = new AtomicLongArray(words);
+        this.mask = words - 1;
+        this.sampleSize = (int) Math.min(10L * Math.max(maximumSize, 16), Integer.MAX_VALUE / 2);
+    }
+
+    /**
+     * Returns the estimated number of recent occurrences of the key, at most 15.
+     */
+    int frequency(Object key) {
+        int h = Objects.hashCode(key);
+        int min = MAX_COUNT;
+        for (long seed : SEEDS) {
+            long x = HashUtils.fmix64(h + seed);
+            int shift = ((int) x & 15) << 2;
+            min = Math.min(min, (int) (table.get((int) (x >>> 32) & mask) >>> shift) & MAX_COUNT);
+        }
+        return min;
+    }
+
+    /**
+     * Records one occurrence of the key, aging the sketch every sample period.
+     */
+    void increment(Object key) {
+        int h = Objects.hashCode(key);
+        boolean added = false;
+        for (long seed : SEEDS) {
+            long x = HashUtils.fmix64(h + seed);
+            int index = (int) (x >>> 32) & mask;
+            int shift = ((int) x & 15) << 2;
+            long word;
+            do {
+                word = table.get(index);
+                if (((word >>> shift) & MAX_COUNT) == MAX_COUNT) {
+                    break;
+                }
+            } while (!table.compareAndSet(index, word, word + (1L << shift)));
+            added |= ((word >>> shift) & MAX_COUNT) != MAX_COUNT;
+        }
+        if (added && additions.incrementAndGet() == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Halves every counter and the increment count.
+     */
+    private void reset() {
+        for (int i = 0; i <= mask; i++) {
+            long word;
+            do {
+                word = table.get(i);
+            } while (!table.compareAndSet(i, word, (word >>> 1) & RESET_MASK));
+        }
+        additions.updateAndGet(n -> n / 2);
+    }
+}
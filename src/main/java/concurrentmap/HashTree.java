@@ -0,0 +1,329 @@
+package concurrentmap;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Balanced (AVL) tree of entries ordered by their cached hash.
+ * <p>
+ * Keys with equal hashes are ordered with {@link Comparable} when both keys
+ * are of the same class and it implements {@code Comparable} of itself, and
+ * by class name otherwise, so keys need
+ * not be comparable and crafted full-hash collisions still get logarithmic
+ * lookups. Keys that remain tied (same hash, same non-comparable class) are
+ * kept as a short chain, linked through {@link Entry#next}, inside a single
+ * tree node.
+ * <p>
+ * Not thread-safe: the owning bucket must hold its lock.
+ *
+ * @param <K> type of key
+ * @param <V> type of value
+ */
+final class HashTree<K, V> {
+
+    /** Tree node holding every entry that ties in the tree order. */
+    private static final class Node<K, V> {
+        final int hash;
+        Entry<K, V> entries; // tied entries, linked by next
+        Node<K, V> left;
+        Node<K, V> right;
+        int height = 1;
+
+        Node(Entry<K, V> entry) {
+            this.hash = entry.hash;
+            this.entries = entry;
+        }
+    }
+
+    private Node<K, V> root;
+    private int size;
+
+    /**
+     * Returns the number of entries in the tree.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds the entry for the given key.
+     *
+     * @return the entry, or null if the key is absent
+     */
+    Entry<K, V> find(int hash, K key) {
+        Node<K, V> node = findNode(hash, key);
+        if (node != null) {
+            for (Entry<K, V> e = node.entries; e != null; e = e.next) {
+                if (e.keyEquals(hash, key)) {
+                    return e;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Inserts an entry whose key is known to be absent.
+     */
+    void insert(Entry<K, V> entry) {
+        entry.next = null;
+        root = insert(root, entry);
+        size++;
+    }
+
+    /**
+     * Removes the entry for the given key.
+     *
+     * @return the removed entry, or null if the key is absent
+     */
+    Entry<K, V> remove(int hash, K key) {
+        Node<K, V> node = findNode(hash, key);
+        if (node == null) {
+            return null;
+        }
+        Entry<K, V> prev = null;
+        for (Entry<K, V> e = node.entries; e != null; prev = e, e = e.next) {
+            if (e.keyEquals(hash, key)) {
+                if (prev == null) {
+                    node.entries = e.next;
+                } else {
+                    prev.next = e.next;
+                }
+                if (node.entries == null) {
+                    root = delete(root, node, hash, key);
+                }
+                size--;
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns all entries in tree order.
+     */
+    List<Entry<K, V>> entries() {
+        List<Entry<K, V>> result = new ArrayList<>(size);
+        collect(root, result);
+        return result;
+    }
+
+    /**
+     * Builds a tree holding every entry of the given chain.
+     */
+    static <K, V> HashTree<K, V> of(Entry<K, V> chain) {
+        HashTree<K, V> tree = new HashTree<>();
+        Entry<K, V> current = chain;
+        while (current != null) {
+            Entry<K, V> next = current.next;
+            tree.insert(current);
+            current = next;
+        }
+        return tree;
+    }
+
+    /**
+     * Relinks every entry into a plain chain and returns its head.
+     */
+    Entry<K, V> toChain() {
+        Entry<K, V> head = null;
+        Entry<K, V> tail = null;
+        for (Entry<K, V> e : entries()) {
+            e.next = null;
+            if (head == null) {
+                head = e;
+            } else {
+                tail.next = e;
+            }
+            tail = e;
+        }
+        return head;
+    }
+
+    /**
+     * Orders a key against a tree node: by hash first, then by tie-break.
+     */
+    private int compare(int hash, K key, Node<K, V> node) {
+        int c = Integer.compare(hash, node.hash);
+        return c != 0 ? c : tieBreak(key, node.entries.key);
+    }
+
+    /**
+     * Orders two keys with equal hashes. Keys of the same class use compareTo
+     * if the class implements {@code Comparable} of itself, as checked by
+     * {@link #SELF_COMPARABLE}; keys of different classes are ordered by
+     * class name.
+     * Returns 0 when the keys cannot be told apart, in which case they
+     * share a tree node and are told apart by equals().
+     * <p>
+     * Identity hash codes are deliberately not used: an equal key passed to a
+     * lookup would have a different identity and land in the wrong subtree.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int tieBreak(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : (a == null ? -1 : 1);
+        }
+        Class<?> ca = a.getClass();
+        Class<?> cb = b.getClass();
+        if (ca != cb) {
+            return ca.getName().compareTo(cb.getName());
+        }
+        if (SELF_COMPARABLE.get(ca)) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return 0;
+    }
+
+    /**
+     * Whether a class directly implements {@code Comparable<itself>}, the
+     * check HashMap makes before comparing tied keys. A class comparable to
+     * some other type would throw ClassCastException from compareTo. Cached
+     * per class, since the generic signature is read by reflection.
+     */
+    private static final ClassValue<Boolean> SELF_COMPARABLE = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> c) {
+            if (c == String.class) {
+                return true;
+            }
+            if (!Comparable.class.isAssignableFrom(c)) {
+                return false;
+            }
+            for (Type t : c.getGenericInterfaces()) {
+                if (t instanceof ParameterizedType p && p.getRawType() == Comparable.class) {
+                    Type[] args = p.getActualTypeArguments();
+                    if (args.length == 1 && args[0] == c) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    };
+
+    private Node<K, V> findNode(int hash, K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = compare(hash, key, node);
+            if (c == 0) {
+                return node;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    private Node<K, V> insert(Node<K, V> node, Entry<K, V> entry) {
+        if (node == null) {
+            return new Node<>(entry);
+        }
+        int c = compare(entry.hash, entry.key, node);
+        if (c == 0) {
+            // tie - chain it inside the existing node
+            entry.next = node.entries;
+            node.entries = entry;
+            return node;
+        }
+        if (c < 0) {
+            node.left = insert(node.left, entry);
+        } else {
+            node.right = insert(node.right, entry);
+        }
+        return rebalance(node);
+    }
+
+    private Node<K, V> delete(Node<K, V> node, Node<K, V> target, int hash, K key) {
+        if (node == null) {
+            return null;
+        }
+        if (node != target) {
+            if (compare(hash, key, node) < 0) {
+                node.left = delete(node.left, target, hash, key);
+            } else {
+                node.right = delete(node.right, target, hash, key);
+            }
+            return rebalance(node);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        // Two children: pull up the smallest node of the right subtree
+        Node<K, V> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        node.right = removeMin(node.right);
+        successor.left = node.left;
+        successor.right = node.right;
+        return rebalance(successor);
+    }
+
+    private Node<K, V> removeMin(Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+
+    private void collect(Node<K, V> node, List<Entry<K, V>> result) {
+        if (node == null) {
+            return;
+        }
+        collect(node.left, result);
+        for (Entry<K, V> e = node.entries; e != null; e = e.next) {
+            result.add(e);
+        }
+        collect(node.right, result);
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <K, V> Node<K, V> rebalance(Node<K, V> node) {
+        updateHeight(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static void updateHeight(Node<?, ?> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    private static <K, V> Node<K, V> rotateRight(Node<K, V> node) {
+        Node<K, V> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        updateHeight(node);
+        updateHeight(left);
+        return left;
+    }
+
+    private static <K, V> Node<K, V> rotateLeft(Node<K, V> node) {
+        Node<K, V> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        updateHeight(node);
+        updateHeight(right);
+        return right;
+    }
+}
@@ -0,0 +1,366 @@
+package concurrentmap;
+
+import utils.HashUtils;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent map from {@code int} keys to {@code int} values that never boxes.
+ * <p>
+ * Keys are split across a fixed number of segments, which play the role of
+ * the buckets of {@link ConcurrentCustomMap}: each has its own lock and its
+ * own table, and grows on its own, so a resize only blocks writers of one
+ * segment, much like a single bucket migration in
+ * {@link ResizableConcurrentMap}. A segment's table is one {@code int[]} of
+ * interleaved key/value pairs probed linearly, so an entry costs two ints
+ * and a lookup touches a single cache line in the common case.
+ * <p>
+ * Writers take the segment's write lock. Readers walk the table under an
+ * optimistic stamp, as in {@link StampedBucket}, and fall back to the read
+ * lock if a writer intervened. Removal shifts the following entries back
+ * instead of leaving tombstones.
+ * <p>
+ * Key 0 marks empty slots, so its mapping is kept beside the table. Absent
+ * keys read as the missing value chosen at construction, 0 by default; use
+ * {@link #containsKey(int)} when 0 is a legitimate value.
+ */
+public class IntIntMap {
+
+    /** Capacity used by the no-argument constructor. */
+    static final int DEFAULT_CAPACITY = 16;
+
+    /** Fraction of a segment's slots in use that triggers its growth. */
+    static final double MAX_LOAD = 0.75;
+
+    /** Segments per available processor when none is given. */
+    static final int SEGMENTS_PER_CPU = 4;
+
+    private static final int MIN_SEGMENT_CAPACITY = 2;
+
+    /** One independently locked and resized part of the map. */
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        int[] slots; // key at 2i, value at 2i + 1, key 0 = empty
+        int threshold;
+        volatile int size;
+        boolean hasZeroKey;
+        int zeroValue;
+
+        Segment(int capacity) {
+            this.slots = new int[capacity * 2];
+            this.threshold = (int) (capacity * MAX_LOAD);
+        }
+    }
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final int segmentMask;
+    private final int missingValue;
+
+    /**
+     * Constructs a map with the default capacity and 0 as missing value.
+     */
+    public IntIntMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a map with room for the given number of entries and 0 as
+     * missing value.
+     *
+     * @param initialCapacity expected number of entries
+     */
+    public IntIntMap(int initialCapacity) {
+        this(initialCapacity, SEGMENTS_PER_CPU * Runtime.getRuntime().availableProcessors(), 0);
+    }
+
+    /**
+     * Constructs a map with the given capacity, segment count and missing value.
+     *
+     * @param initialCapacity  expected number of entries
+     * @param concurrencyLevel number of segments, rounded up to a power of two
+     * @param missingValue     value returned for absent keys
+     */
+    public IntIntMap(int initialCapacity, int concurrencyLevel, int missingValue) {
+        if (initialCapacity <= 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("capacity and concurrency level must be positive");
+        }
+        int segmentCount = ceilPowerOfTwo(Math.min(concurrencyLevel, 1 << 16));
+        int segmentCapacity = ceilPowerOfTwo(Math.max(MIN_SEGMENT_CAPACITY,
+                (int) Math.ceil(initialCapacity / (segmentCount * MAX_LOAD))));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        this.segmentMask = segmentCount - 1;
+        this.missingValue = missingValue;
+    }
+
+    private static int ceilPowerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private static int hash(int key) {
+        return HashUtils.fmix32(key);
+    }
+
+    /**
+     * Picks the segment from the high bits of the hash, leaving the low bits
+     * to index the segment's table.
+     */
+    private Segment segmentFor(int hash) {
+        return segments[(hash >>> segmentShift) & segmentMask];
+    }
+
+    /**
+     * Inserts or updates a mapping.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the previous value, or the missing value if the key was absent
+     */
+    public int put(int key, int value) {
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        long stamp = seg.lock.writeLock();
+        try {
+            if (key == 0) {
+                int old = seg.hasZeroKey ? seg.zeroValue : missingValue;
+                if (!seg.hasZeroKey) {
+                    seg.hasZeroKey = true;
+                    seg.size++;
+                }
+                seg.zeroValue = value;
+                return old;
+            }
+            int[] slots = seg.slots;
+            int mask = (slots.length >> 1) - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int k = slots[i << 1];
+                if (k == key) {
+                    int old = slots[(i << 1) + 1];
+                    slots[(i << 1) + 1] = value;
+                    return old;
+                }
+                if (k == 0) {
+                    slots[i << 1] = key;
+                    slots[(i << 1) + 1] = value;
+                    if (++seg.size > seg.threshold) {
+                        grow(seg);
+                    }
+                    return missingValue;
+                }
+            }
+        } finally {
+            seg.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the value for the key, or the missing value if it is absent.
+     *
+     * @param key the key
+     * @return the mapped value or the missing value
+     */
+    public int get(int key) {
+        return getOrDefault(key, missingValue);
+    }
+
+    /**
+     * Returns the value for the key, or the given default if it is absent.
+     *
+     * @param key          the key
+     * @param defaultValue value returned for an absent key
+     * @return the mapped value or {@code defaultValue}
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        long stamp = seg.lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            int value = find(seg, key, hash, defaultValue);
+            if (seg.lock.validate(stamp)) {
+                return value;
+            }
+        }
+        stamp = seg.lock.readLock();
+        try {
+            return find(seg, key, hash, defaultValue);
+        } finally {
+            seg.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns true if the key is mapped.
+     *
+     * @param key the key
+     * @return whether the key is present
+     */
+    public boolean containsKey(int key) {
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        long stamp = seg.lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            boolean found = key == 0 ? seg.hasZeroKey : indexOf(seg.slots, key, hash) >= 0;
+            if (seg.lock.validate(stamp)) {
+                return found;
+            }
+        }
+        stamp = seg.lock.readLock();
+        try {
+            return key == 0 ? seg.hasZeroKey : indexOf(seg.slots, key, hash) >= 0;
+        } finally {
+            seg.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Reads a value; may run without the lock, so it only reads each shared
+     * field once and never trusts what it reads until the stamp is validated.
+     */
+    private static int find(Segment seg, int key, int hash, int defaultValue) {
+        if (key == 0) {
+            boolean present = seg.hasZeroKey;
+            int value = seg.zeroValue;
+            return present ? value : defaultValue;
+        }
+        int[] slots = seg.slots;
+        int i = indexOf(slots, key, hash);
+        return i >= 0 ? slots[(i << 1) + 1] : defaultValue;
+    }
+
+    /**
+     * Probes for a non-zero key. Bounded by the table size, so a table seen
+     * mid-update by an optimistic reader cannot make it loop forever.
+     *
+     * @return the slot of the key, or -1 if absent
+     */
+    private static int indexOf(int[] slots, int key, int hash) {
+        int capacity = slots.length >> 1;
+        int mask = capacity - 1;
+        int i = hash & mask;
+        for (int probes = 0; probes < capacity; probes++, i = (i + 1) & mask) {
+            int k = slots[i << 1];
+            if (k == key) {
+                return i;
+            }
+            if (k == 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes a mapping.
+     *
+     * @param key the key
+     * @return the removed value, or the missing value if the key was absent
+     */
+    public int remove(int key) {
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        long stamp = seg.lock.writeLock();
+        try {
+            if (key == 0) {
+                if (!seg.hasZeroKey) {
+                    return missingValue;
+                }
+                seg.hasZeroKey = false;
+                seg.size--;
+                return seg.zeroValue;
+            }
+            int[] slots = seg.slots;
+            int i = indexOf(slots, key, hash);
+            if (i < 0) {
+                return missingValue;
+            }
+            int old = slots[(i << 1) + 1];
+            shiftBack(slots, i);
+            seg.size--;
+            return old;
+        } finally {
+            seg.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Deletes the entry at the given slot by moving later entries of the same
+     * probe run back into the gap, so no tombstones are needed.
+     */
+    private static void shiftBack(int[] slots, int gap) {
+        int mask = (slots.length >> 1) - 1;
+        for (int j = (gap + 1) & mask; ; j = (j + 1) & mask) {
+            int k = slots[j << 1];
+            if (k == 0) {
+                break;
+            }
+            int home = hash(k) & mask;
+            // move the entry unless its home lies cyclically in (gap, j]
+            boolean stays = gap <= j ? (home > gap && home <= j) : (home > gap || home <= j);
+            if (!stays) {
+                slots[gap << 1] = k;
+                slots[(gap << 1) + 1] = slots[(j << 1) + 1];
+                gap = j;
+            }
+        }
+        slots[gap << 1] = 0;
+        slots[(gap << 1) + 1] = 0;
+    }
+
+    /**
+     * Doubles a segment's table under its write lock. Optimistic readers
+     * holding the old table fail validation and retry.
+     */
+    private static void grow(Segment seg) {
+        int[] old = seg.slots;
+        int capacity = old.length; // twice the old slot count
+        int[] slots = new int[capacity * 2];
+        int mask = capacity - 1;
+        for (int i = 0; i < old.length; i += 2) {
+            int k = old[i];
+            if (k != 0) {
+                int j = hash(k) & mask;
+                while (slots[j << 1] != 0) {
+                    j = (j + 1) & mask;
+                }
+                slots[j << 1] = k;
+                slots[(j << 1) + 1] = old[i + 1];
+            }
+        }
+        seg.slots = slots;
+        seg.threshold = (int) (capacity * MAX_LOAD);
+    }
+
+    /**
+     * Returns the number of mappings, summed over the segments without locking.
+     *
+     * @return number of mappings
+     */
+    public int size() {
+        long total = 0;
+        for (Segment seg : segments) {
+            total += seg.size;
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the value that reads of absent keys return.
+     *
+     * @return the missing value
+     */
+    public int getMissingValue() {
+        return missingValue;
+    }
+
+    /**
+     * Returns the number of independently locked segments.
+     *
+     * @return segment count
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+}
@@ -1,8 +1,12 @@
 package concurrentmap;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.List;
+import java.util.Objects;
 import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 
 /**
  * LockFreeBucket provides a non-blocking bucket implementation using
@@ -11,6 +15,16 @@ import java.util.concurrent.atomic.AtomicReference;
  * Unlike {@link Bucket}, which uses explicit locks, this bucket relies
  * on atomic primitives to guarantee thread safety without lock contention.
  * <p>
+ * New entries are CAS-ed onto the head. Removal is Harris-style: an entry is
+ * first deleted logically by CAS-ing its value to a tombstone, then unlinked
+ * physically by CAS-ing its predecessor's next pointer. Removes allocate
+ * nothing and only conflict with operations on neighbouring nodes.
+ * <p>
+ * A resize seals the bucket with a {@link ForwardingNode} and then freezes
+ * each entry by CAS-ing its value to {@code MOVED} before copying it, so a
+ * writer whose value CAS loses to the freeze retries in the target table
+ * instead of writing to a copy that is already gone.
+ * <p>
  * Suitable for high-concurrency scenarios where fine-grained locking overhead
  * becomes significant.
  *
@@ -19,6 +33,25 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class LockFreeBucket<K, V> implements BucketInterface<K, V> {
 
+    /** Value of an entry that has been logically deleted. */
+    private static final Object TOMBSTONE = new Object();
+
+    /** Value of an entry frozen by {@link #transferTo}; the key now lives in the target table. */
+    private static final Object MOVED = new Object();
+
+    private static final VarHandle VALUE;
+    private static final VarHandle NEXT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            VALUE = lookup.findVarHandle(Entry.class, "value", Object.class);
+            NEXT = lookup.findVarHandle(Entry.class, "next", Entry.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /** Head node of the lock-free linked list. */
     private final AtomicReference<Entry<K, V>> head;
 
@@ -33,29 +66,42 @@ public class LockFreeBucket<K, V> implements BucketInterface<K, V> {
      * Inserts or updates a key-value pair using CAS-based atomic updates.
      * This operation retries until success to ensure atomicity without locks.
      *
+     * @param hash  the hash of the key
      * @param key   the key to insert or update
      * @param value the value associated with the key
      * @return the previous value if key existed, otherwise null
      */
     @Override
-    public V put(K key, V value) {
+    public V put(int hash, K key, V value) {
+        retry:
         while (true) {
             Entry<K, V> currentHead = head.get();
+            if (currentHead instanceof ForwardingNode<K, V> fwd) {
+                // bucket migrated to a resized table - redirect
+                return fwd.awaitTarget().getBucket(hash).put(hash, key, value);
+            }
             Entry<K, V> current = currentHead;
 
             // search if the key already exists
             while (current != null) {
-                if (current.keyEquals(key)) {
-                    // key exisits - update in place (safe as value is volatile in Entry)
+                if (current.keyEquals(hash, key)) {
                     V oldValue = current.value;
-                    current.value = value;
-                    return oldValue;
+                    if (oldValue == MOVED) {
+                        continue retry; // the head is sealed, retry in the target
+                    }
+                    if (oldValue != TOMBSTONE) {
+                        // key exists - swap the value unless a remover or a migration got there first
+                        if (!VALUE.compareAndSet(current, oldValue, value)) {
+                            continue retry;
+                        }
+                        return oldValue;
+                    }
                 }
                 current = current.next;
             }
 
             // Entry not found - create new node and attempt CAS
-            Entry<K, V> newNode = new Entry<>(key, value);
+            Entry<K, V> newNode = new Entry<>(hash, key, value);
             newNode.next = currentHead;
 
             if (head.compareAndSet(currentHead, newNode)) {
@@ -71,15 +117,28 @@ public class LockFreeBucket<K, V> implements BucketInterface<K, V> {
      * Retrieves a value by key from this bucket.
      * Lock-free traversal — no synchronization required.
      *
+     * @param hash the hash of the key
      * @param key the key to look up
      * @return the value if found, otherwise null
      */
     @Override
-    public V get(K key) {
+    public V get(int hash, K key) {
         Entry<K, V> current = head.get();
+        if (current instanceof ForwardingNode<K, V> fwd) {
+            if (fwd.isComplete()) {
+                return fwd.target.getBucket(hash).get(hash, key);
+            }
+            current = fwd.next; // migration in progress, the sealed chain is still valid
+        }
         while (current != null) {
-            if (current.keyEquals(key)) {
-                return current.value;
+            if (current.keyEquals(hash, key)) {
+                V value = current.access();
+                if (value == MOVED) {
+                    return ((ForwardingNode<K, V>) head.get()).awaitTarget().getBucket(hash).get(hash, key);
+                }
+                if (value != TOMBSTONE) {
+                    return value;
+                }
             }
             current = current.next;
         }
@@ -87,45 +146,314 @@ public class LockFreeBucket<K, V> implements BucketInterface<K, V> {
     }
 
     /**
-     * Removes a key-value pair atomically.
-     * Uses retry-based CAS to ensure correctness under concurrency.
+     * Removes a key-value pair without locks or allocation.
+     * The entry's value is CAS-ed to a tombstone (the linearization point),
+     * then the entry is unlinked from the chain.
      *
+     * @param hash the hash of the key
      * @param key the key to remove
      * @return the removed value, or null if not found
      */
     @Override
-    public V remove(K key) {
+    public V remove(int hash, K key) {
+        retry:
         while (true) {
-            Entry<K, V> currentHead = head.get();
-            Entry<K, V> current = currentHead;
-            Entry<K, V> prev = null;
-            V removedValue = null;
-
-            // Build a new list excluding the target key
-            Entry<K, V> newHead = null;
-            Entry<K, V> newTail = null;
+            Entry<K, V> current = head.get();
+            if (current instanceof ForwardingNode<K, V> fwd) {
+                return fwd.awaitTarget().getBucket(hash).remove(hash, key);
+            }
 
             while (current != null) {
-                if (current.keyEquals(key)) {
-                    removedValue = current.value;
-                    // Skip adding this entry (effectively deleting it)
-                } else {
-                    Entry<K, V> copied = new Entry<>(current.key, current.value);
-                    if (newHead == null) {
-                        newHead = copied;
-                        newTail = copied;
-                    } else {
-                        newTail.next = copied;
-                        newTail = copied;
+                if (current.keyEquals(hash, key)) {
+                    V oldValue = current.value;
+                    if (oldValue == MOVED) {
+                        continue retry;
+                    }
+                    if (oldValue != TOMBSTONE) {
+                        // logical deletion
+                        if (!VALUE.compareAndSet(current, oldValue, TOMBSTONE)) {
+                            continue retry;
+                        }
+                        unlinkDeleted();
+                        return oldValue;
                     }
                 }
                 current = current.next;
             }
+            return null;
+        }
+    }
+
+    /**
+     * Computes a new value for the key with a CAS loop: the function is
+     * applied to the value read, and the result is installed only if that
+     * value is still current, otherwise the function runs again. A null
+     * result deletes the entry as {@link #remove} does.
+     *
+     * @param hash              the hash of the key
+     * @param key               the key to compute a value for
+     * @param remappingFunction computes the new value from the key and the current value
+     * @return the new value, or null if the key is now absent
+     */
+    @Override
+    public V compute(int hash, K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        retry:
+        while (true) {
+            Entry<K, V> currentHead = head.get();
+            if (currentHead instanceof ForwardingNode<K, V> fwd) {
+                return fwd.awaitTarget().getBucket(hash).compute(hash, key, remappingFunction);
+            }
+            for (Entry<K, V> current = currentHead; current != null; current = current.next) {
+                if (current.keyEquals(hash, key)) {
+                    V oldValue = current.value;
+                    if (oldValue == MOVED) {
+                        continue retry;
+                    }
+                    if (oldValue == TOMBSTONE) {
+                        continue;
+                    }
+                    V newValue = remappingFunction.apply(key, oldValue);
+                    if (!VALUE.compareAndSet(current, oldValue, newValue == null ? TOMBSTONE : newValue)) {
+                        continue retry;
+                    }
+                    if (newValue == null) {
+                        unlinkDeleted();
+                    }
+                    return newValue;
+                }
+            }
+
+            V newValue = remappingFunction.apply(key, null);
+            if (newValue == null) {
+                return null;
+            }
+            Entry<K, V> newNode = new Entry<>(hash, key, newValue);
+            newNode.next = currentHead;
+            if (head.compareAndSet(currentHead, newNode)) {
+                return newValue;
+            }
+        }
+    }
+
+    /**
+     * Inserts the entry with a CAS on the head unless the key is present.
+     *
+     * @param hash  the hash of the key
+     * @param key   the key to insert
+     * @param value the value to associate with an absent key
+     * @return the current value, or null if the entry was added
+     */
+    @Override
+    public V putIfAbsent(int hash, K key, V value) {
+        retry:
+        while (true) {
+            Entry<K, V> currentHead = head.get();
+            if (currentHead instanceof ForwardingNode<K, V> fwd) {
+                return fwd.awaitTarget().getBucket(hash).putIfAbsent(hash, key, value);
+            }
+            for (Entry<K, V> current = currentHead; current != null; current = current.next) {
+                if (current.keyEquals(hash, key)) {
+                    V existing = current.value;
+                    if (existing == MOVED) {
+                        continue retry;
+                    }
+                    if (existing != TOMBSTONE) {
+                        return existing;
+                    }
+                }
+            }
+            Entry<K, V> newNode = new Entry<>(hash, key, value);
+            newNode.next = currentHead;
+            if (head.compareAndSet(currentHead, newNode)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Swaps the value with a single CAS if it equals the expected one.
+     *
+     * @param hash          the hash of the key
+     * @param key           the key to update
+     * @param expectedValue the value the key must currently have
+     * @param newValue      the value to store
+     * @return true if the value was replaced
+     */
+    @Override
+    public boolean replace(int hash, K key, V expectedValue, V newValue) {
+        retry:
+        while (true) {
+            Entry<K, V> current = head.get();
+            if (current instanceof ForwardingNode<K, V> fwd) {
+                return fwd.awaitTarget().getBucket(hash).replace(hash, key, expectedValue, newValue);
+            }
+            for (; current != null; current = current.next) {
+                if (current.keyEquals(hash, key)) {
+                    V oldValue = current.value;
+                    if (oldValue == MOVED) {
+                        continue retry;
+                    }
+                    if (oldValue == TOMBSTONE) {
+                        continue;
+                    }
+                    if (!Objects.equals(oldValue, expectedValue)) {
+                        return false;
+                    }
+                    if (!VALUE.compareAndSet(current, oldValue, newValue)) {
+                        continue retry;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the entry with a CAS to the tombstone if its value equals the
+     * expected one, then unlinks it as {@link #remove(int, Object)} does.
+     *
+     * @param hash          the hash of the key
+     * @param key           the key to remove
+     * @param expectedValue the value the key must currently have
+     * @return true if the entry was removed
+     */
+    @Override
+    public boolean remove(int hash, K key, V expectedValue) {
+        retry:
+        while (true) {
+            Entry<K, V> current = head.get();
+            if (current instanceof ForwardingNode<K, V> fwd) {
+                return fwd.awaitTarget().getBucket(hash).remove(hash, key, expectedValue);
+            }
+            for (; current != null; current = current.next) {
+                if (current.keyEquals(hash, key)) {
+                    V oldValue = current.value;
+                    if (oldValue == MOVED) {
+                        continue retry;
+                    }
+                    if (oldValue == TOMBSTONE) {
+                        continue;
+                    }
+                    if (!Objects.equals(oldValue, expectedValue)) {
+                        return false;
+                    }
+                    if (!VALUE.compareAndSet(current, oldValue, TOMBSTONE)) {
+                        continue retry;
+                    }
+                    unlinkDeleted();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 
-            if (head.compareAndSet(currentHead, newHead)) {
-                return removedValue;
+    /**
+     * Inserts or updates a batch of entries. Present keys have their value
+     * swapped one CAS at a time, as in {@link #put}; the absent ones are
+     * linked into one chain in front of the current head and published with
+     * a single CAS. If the head moved in the meantime, the remaining entries
+     * are checked again against the new chain.
+     *
+     * @param batch entries of this bucket
+     * @return the number of keys added
+     */
+    @Override
+    public int putAll(List<Entry<K, V>> batch) {
+        int added = 0;
+        List<Entry<K, V>> pending = batch;
+        while (!pending.isEmpty()) {
+            Entry<K, V> currentHead = head.get();
+            if (currentHead instanceof ForwardingNode<K, V> fwd) {
+                return added + fwd.awaitTarget().putBatch(pending);
+            }
+            List<Entry<K, V>> absent = new ArrayList<>(pending.size());
+            next:
+            for (Entry<K, V> e : pending) {
+                if (updateExisting(currentHead, e)) {
+                    continue;
+                }
+                for (Entry<K, V> queued : absent) {
+                    if (queued.keyEquals(e.hash, e.key)) {
+                        queued.value = e.value; // repeated key: the later value wins
+                        continue next;
+                    }
+                }
+                absent.add(e);
+            }
+            if (absent.isEmpty()) {
+                return added;
+            }
+            for (int i = 0; i < absent.size(); i++) {
+                absent.get(i).next = i + 1 < absent.size() ? absent.get(i + 1) : currentHead;
             }
-            // Retry if another thread modified head concurrently
+            if (head.compareAndSet(currentHead, absent.get(0))) {
+                return added + absent.size();
+            }
+            pending = absent; // the head moved: recheck against the new chain
+        }
+        return added;
+    }
+
+    /**
+     * Swaps the value of the batch entry's key if it is live in the chain.
+     * A frozen entry counts as absent: the chain is then sealed, so the head
+     * CAS publishing the absent keys fails and the batch moves to the target.
+     *
+     * @return false if the key is absent from the chain
+     */
+    private boolean updateExisting(Entry<K, V> chain, Entry<K, V> e) {
+        retry:
+        while (true) {
+            for (Entry<K, V> current = chain; current != null; current = current.next) {
+                if (current.keyEquals(e.hash, e.key)) {
+                    V oldValue = current.value;
+                    if (oldValue == MOVED) {
+                        return false;
+                    }
+                    if (oldValue == TOMBSTONE) {
+                        continue;
+                    }
+                    if (!VALUE.compareAndSet(current, oldValue, e.value)) {
+                        continue retry;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Physically unlinks logically deleted entries.
+     * Each unlink is a single CAS on the predecessor's next pointer (or the head);
+     * if it fails a neighbour changed concurrently and the remaining cleanup is
+     * left to the next remove.
+     */
+    private void unlinkDeleted() {
+        Entry<K, V> first = head.get();
+        while (first != null && first.value == TOMBSTONE) {
+            if (!head.compareAndSet(first, first.next)) {
+                return; // head moved or bucket sealed
+            }
+            first = first.next;
+        }
+        if (first == null || first instanceof ForwardingNode) {
+            return;
+        }
+        Entry<K, V> prev = first;
+        Entry<K, V> current = prev.next;
+        while (current != null) {
+            Entry<K, V> next = current.next;
+            if (current.value == TOMBSTONE) {
+                if (!NEXT.compareAndSet(prev, current, next)) {
+                    return;
+                }
+            } else {
+                prev = current;
+            }
+            current = next;
         }
     }
 
@@ -139,8 +467,11 @@ public class LockFreeBucket<K, V> implements BucketInterface<K, V> {
     public int size() {
         int count = 0;
         Entry<K, V> current = head.get();
-        while (current != null) {
-            count++;
+        while (current != null && !(current instanceof ForwardingNode)) {
+            V value = current.value;
+            if (value != TOMBSTONE && value != MOVED) {
+                count++;
+            }
             current = current.next;
         }
         return count;
@@ -149,6 +480,10 @@ public class LockFreeBucket<K, V> implements BucketInterface<K, V> {
     /**
      * Returns a snapshot list of entries currently in the bucket.
      * Thread-safe but not guaranteed to reflect atomic state at a single point in time.
+     * <p>
+     * The entries are copies: each value is read once and deleted or frozen
+     * entries are skipped, so a remove racing with the caller cannot make it
+     * see a tombstone where a value is expected.
      *
      * @return list of {@link Entry} objects representing all key-value pairs
      */
@@ -156,8 +491,31 @@ public class LockFreeBucket<K, V> implements BucketInterface<K, V> {
     public List<Entry<K, V>> getEntries() {
         List<Entry<K, V>> entries = new ArrayList<>();
         Entry<K, V> current = head.get();
-        while (current != null) {
-            entries.add(current);
+        while (current != null && !(current instanceof ForwardingNode)) {
+            V value = current.value;
+            if (value != TOMBSTONE && value != MOVED) {
+                entries.add(new Entry<>(current.hash, current.key, value));
+            }
+            current = current.next;
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the entries linked in the chain that were live when passed.
+     * A remove may still tombstone one of them before the caller looks at it.
+     *
+     * @return list of the live {@link Entry} objects
+     */
+    @Override
+    public List<Entry<K, V>> getLinkedEntries() {
+        List<Entry<K, V>> entries = new ArrayList<>();
+        Entry<K, V> current = head.get();
+        while (current != null && !(current instanceof ForwardingNode)) {
+            V value = current.value;
+            if (value != TOMBSTONE && value != MOVED) {
+                entries.add(current);
+            }
             current = current.next;
         }
         return entries;
@@ -172,4 +530,41 @@ public class LockFreeBucket<K, V> implements BucketInterface<K, V> {
     public int getLoad() {
         return size();
     }
+
+    /**
+     * Seals the bucket by CAS-ing a {@link ForwardingNode} onto the head, then
+     * freezes each live entry and copies it into the target table.
+     * <p>
+     * Inserts CAS the head, so they fail against the marker and retry into the
+     * target. Freezing CASes the value to {@code MOVED}, so every update or
+     * remove either lands before the freeze and is copied, or fails its value
+     * CAS and retries in the target once the copy completes. Readers keep
+     * walking the sealed chain until they reach a frozen entry, then wait for
+     * the copy and read the target.
+     *
+     * @param target the table receiving the entries
+     */
+    @Override
+    public void transferTo(ConcurrentCustomMap<K, V> target) {
+        ForwardingNode<K, V> fwd = new ForwardingNode<>(target);
+        Entry<K, V> chain;
+        do {
+            chain = head.get();
+            if (chain instanceof ForwardingNode) {
+                return; // already migrated
+            }
+            fwd.next = chain;
+        } while (!head.compareAndSet(chain, fwd));
+
+        for (Entry<K, V> current = chain; current != null; current = current.next) {
+            V value;
+            do {
+                value = current.value;
+            } while (value != TOMBSTONE && !VALUE.compareAndSet(current, value, MOVED));
+            if (value != TOMBSTONE) {
+                target.getBucket(current.hash).put(current.hash, current.key, value);
+            }
+        }
+        fwd.complete();
+    }
 }
@@ -0,0 +1,340 @@
+package concurrentmap;
+
+import utils.HashUtils;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent map from {@code long} keys to object values that never boxes
+ * its keys, for ID-indexed lookups.
+ * <p>
+ * Keys are split across a fixed number of segments, which play the role of
+ * the buckets of {@link ConcurrentCustomMap}: each has its own lock and its
+ * own table, and grows on its own, so a resize only blocks writers of one
+ * segment, much like a single bucket migration in
+ * {@link ResizableConcurrentMap}. A segment's table is a {@code long[]} of keys
+ * probed linearly with a parallel array of values, so an entry costs one
+ * long and one reference instead of an Entry and a boxed key.
+ * <p>
+ * Writers take the segment's write lock. Readers walk the table under an
+ * optimistic stamp, as in {@link StampedBucket}, and fall back to the read
+ * lock if a writer intervened. Removal shifts the following entries back
+ * instead of leaving tombstones.
+ * <p>
+ * Key 0 marks empty slots, so its mapping is kept beside the table. Absent
+ * keys read as null, and null values are not supported.
+ *
+ * @param <V> value type
+ */
+public class LongObjectMap<V> {
+
+    /** Capacity used by the no-argument constructor. */
+    static final int DEFAULT_CAPACITY = 16;
+
+    /** Fraction of a segment's slots in use that triggers its growth. */
+    static final double MAX_LOAD = 0.75;
+
+    /** Segments per available processor when none is given. */
+    static final int SEGMENTS_PER_CPU = 4;
+
+    private static final int MIN_SEGMENT_CAPACITY = 2;
+
+    /** One independently locked and resized part of the map. */
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        long[] keys; // key 0 = empty
+        Object[] values; // same length as keys, replaced together
+        int threshold;
+        volatile int size;
+        Object zeroValue; // mapping of key 0, null if absent
+
+        Segment(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.threshold = (int) (capacity * MAX_LOAD);
+        }
+    }
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final int segmentMask;
+
+    /**
+     * Constructs a map with the default capacity.
+     */
+    public LongObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a map with room for the given number of entries.
+     *
+     * @param initialCapacity expected number of entries
+     */
+    public LongObjectMap(int initialCapacity) {
+        this(initialCapacity, SEGMENTS_PER_CPU * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a map with the given capacity and segment count.
+     *
+     * @param initialCapacity  expected number of entries
+     * @param concurrencyLevel number of segments, rounded up to a power of two
+     */
+    public LongObjectMap(int initialCapacity, int concurrencyLevel) {
+        if (initialCapacity <= 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("capacity and concurrency level must be positive");
+        }
+        int segmentCount = ceilPowerOfTwo(Math.min(concurrencyLevel, 1 << 16));
+        int segmentCapacity = ceilPowerOfTwo(Math.max(MIN_SEGMENT_CAPACITY,
+                (int) Math.ceil(initialCapacity / (segmentCount * MAX_LOAD))));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        this.segmentMask = segmentCount - 1;
+    }
+
+    private static int ceilPowerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private static int hash(long key) {
+        return (int) HashUtils.fmix64(key);
+    }
+
+    /**
+     * Picks the segment from the high bits of the hash, leaving the low bits
+     * to index the segment's table.
+     */
+    private Segment segmentFor(int hash) {
+        return segments[(hash >>> segmentShift) & segmentMask];
+    }
+
+    /**
+     * Inserts or updates a mapping.
+     *
+     * @param key   the key
+     * @param value the value, not null
+     * @return the previous value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        Objects.requireNonNull(value, "value");
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        long stamp = seg.lock.writeLock();
+        try {
+            if (key == 0) {
+                Object old = seg.zeroValue;
+                if (old == null) {
+                    seg.size++;
+                }
+                seg.zeroValue = value;
+                return (V) old;
+            }
+            long[] keys = seg.keys;
+            Object[] values = seg.values;
+            int mask = keys.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) {
+                    Object old = values[i];
+                    values[i] = value;
+                    return (V) old;
+                }
+                if (k == 0) {
+                    keys[i] = key;
+                    values[i] = value;
+                    if (++seg.size > seg.threshold) {
+                        grow(seg);
+                    }
+                    return null;
+                }
+            }
+        } finally {
+            seg.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the value for the key, or null if it is absent.
+     *
+     * @param key the key
+     * @return the mapped value or null
+     */
+    public V get(long key) {
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        long stamp = seg.lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            V value = find(seg, key, hash);
+            if (seg.lock.validate(stamp)) {
+                return value;
+            }
+        }
+        stamp = seg.lock.readLock();
+        try {
+            return find(seg, key, hash);
+        } finally {
+            seg.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns true if the key is mapped.
+     *
+     * @param key the key
+     * @return whether the key is present
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Reads a value; may run without the lock, so it only reads each shared
+     * field once and never trusts what it reads until the stamp is validated.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> V find(Segment seg, long key, int hash) {
+        if (key == 0) {
+            return (V) seg.zeroValue;
+        }
+        long[] keys = seg.keys;
+        Object[] values = seg.values;
+        if (keys.length != values.length) {
+            return null; // caught between a resize's two writes, the stamp will not validate
+        }
+        int i = indexOf(keys, key, hash);
+        return i >= 0 ? (V) values[i] : null;
+    }
+
+    /**
+     * Probes for a non-zero key. Bounded by the table size, so a table seen
+     * mid-update by an optimistic reader cannot make it loop forever.
+     *
+     * @return the slot of the key, or -1 if absent
+     */
+    private static int indexOf(long[] keys, long key, int hash) {
+        int capacity = keys.length;
+        int mask = capacity - 1;
+        int i = hash & mask;
+        for (int probes = 0; probes < capacity; probes++, i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return i;
+            }
+            if (k == 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes a mapping.
+     *
+     * @param key the key
+     * @return the removed value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        long stamp = seg.lock.writeLock();
+        try {
+            if (key == 0) {
+                Object old = seg.zeroValue;
+                if (old != null) {
+                    seg.zeroValue = null;
+                    seg.size--;
+                }
+                return (V) old;
+            }
+            int i = indexOf(seg.keys, key, hash);
+            if (i < 0) {
+                return null;
+            }
+            Object old = seg.values[i];
+            shiftBack(seg.keys, seg.values, i);
+            seg.size--;
+            return (V) old;
+        } finally {
+            seg.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Deletes the entry at the given slot by moving later entries of the same
+     * probe run back into the gap, so no tombstones are needed.
+     */
+    private static void shiftBack(long[] keys, Object[] values, int gap) {
+        int mask = keys.length - 1;
+        for (int j = (gap + 1) & mask; ; j = (j + 1) & mask) {
+            long k = keys[j];
+            if (k == 0) {
+                break;
+            }
+            int home = hash(k) & mask;
+            // move the entry unless its home lies cyclically in (gap, j]
+            boolean stays = gap <= j ? (home > gap && home <= j) : (home > gap || home <= j);
+            if (!stays) {
+                keys[gap] = k;
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+    }
+
+    /**
+     * Doubles a segment's table under its write lock. Optimistic readers
+     * holding the old table fail validation and retry.
+     */
+    private static void grow(Segment seg) {
+        long[] oldKeys = seg.keys;
+        Object[] oldValues = seg.values;
+        int capacity = oldKeys.length * 2;
+        long[] keys = new long[capacity];
+        Object[] values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long k = oldKeys[i];
+            if (k != 0) {
+                int j = hash(k) & mask;
+                while (keys[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = k;
+                values[j] = oldValues[i];
+            }
+        }
+        seg.keys = keys;
+        seg.values = values;
+        seg.threshold = (int) (capacity * MAX_LOAD);
+    }
+
+    /**
+     * Returns the number of mappings, summed over the segments without locking.
+     *
+     * @return number of mappings
+     */
+    public int size() {
+        long total = 0;
+        for (Segment seg : segments) {
+            total += seg.size;
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of independently locked segments.
+     *
+     * @return segment count
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+}
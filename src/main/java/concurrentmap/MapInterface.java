@@ -0,0 +1,41 @@
+package concurrentmap;
+
+/**
+ * MapInterface defines the operations shared by every map engine in this
+ * package, so callers and benchmarks can swap the chained
+ * {@link ConcurrentCustomMap} for other engines such as
+ * {@link OpenAddressingMap} without changing their code.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public interface MapInterface<K, V> {
+
+    /**
+     * Inserts or updates a key-value pair.
+     * @param key the key to insert or update
+     * @param value the value associated with the key
+     * @return the previous value associated with the key, or null if none existed
+     */
+    V put(K key, V value);
+
+    /**
+     * Retrieves the value associated with the key.
+     * @param key the key to look up
+     * @return the value associated with the key, or null if not found
+     */
+    V get(K key);
+
+    /**
+     * Removes the key-value pair.
+     * @param key the key to remove
+     * @return the removed value, or null if key was not present
+     */
+    V remove(K key);
+
+    /**
+     * Returns the number of entries in the map.
+     * @return number of entries
+     */
+    int size();
+}
@@ -0,0 +1,254 @@
+package concurrentmap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Binary snapshot format used by {@link ResizableConcurrentMap}.
+ * <p>
+ * The file is a header, a sequence of independently decodable blocks and a
+ * footer indexing them:
+ * <pre>
+ * header : magic(8) version(4)
+ * block  : entries(4) { key value }*    encoded by the codecs
+ * footer : totalEntries(8) blockCount(4) { offset(8) length(4) entries(4) }*
+ * trailer: footerOffset(8) magic(8)
+ * </pre>
+ * Writers encode disjoint bucket ranges in parallel, cut them into blocks of
+ * about {@link #BLOCK_BYTES} and reserve file space for each block with an
+ * atomic counter, so blocks land in any order without coordination.
+ * Readers fetch the footer first and decode the blocks in parallel.
+ * Hashes are not stored: they are recomputed on load, so a snapshot can be
+ * restored into a map with a different, even randomized, hash strategy.
+ */
+final class MapSnapshot {
+    // Private constructor to prevent instantiation
+    private MapSnapshot() {}
+
+    static final long MAGIC = 0x434D534E41505331L; // "CMSNAPS1"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 12;
+    static final int TRAILER_BYTES = 16;
+
+    /** Target size of one encoded block. */
+    static final int BLOCK_BYTES = 1 << 20;
+
+    /** Bucket ranges per available processor when writing. */
+    private static final int RANGES_PER_CPU = 4;
+
+    /** Location of one block in the file. */
+    private record Block(long offset, int length, int entries) {}
+
+    /**
+     * Writes every entry of the table to the file, replacing it.
+     * Entries are read bucket by bucket, so the result reflects each bucket
+     * at the moment it was visited.
+     *
+     * @return number of entries written
+     */
+    static <K, V> long write(ConcurrentCustomMap<K, V> table, Path file,
+                             Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.allocate(HEADER_BYTES).putLong(MAGIC).putInt(VERSION).flip(), 0);
+            AtomicLong position = new AtomicLong(HEADER_BYTES);
+            int capacity = table.getCapacity();
+            int ranges = Math.min(capacity, RANGES_PER_CPU * Runtime.getRuntime().availableProcessors());
+            List<List<Block>> written = new ArrayList<>();
+            for (int r = 0; r < ranges; r++) {
+                written.add(new ArrayList<>());
+            }
+            try {
+                IntStream.range(0, ranges).parallel().forEach(r -> {
+                    int from = (int) ((long) capacity * r / ranges);
+                    int to = (int) ((long) capacity * (r + 1) / ranges);
+                    try {
+                        writeRange(table, from, to, channel, position, keyCodec, valueCodec, written.get(r));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            long total = 0;
+            int blockCount = 0;
+            for (List<Block> blocks : written) {
+                for (Block b : blocks) {
+                    total += b.entries();
+                    blockCount++;
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(12 + blockCount * 16 + TRAILER_BYTES);
+            DataOutputStream out = new DataOutputStream(bytes);
+            long footerOffset = position.get();
+            out.writeLong(total);
+            out.writeInt(blockCount);
+            for (List<Block> blocks : written) {
+                for (Block b : blocks) {
+                    out.writeLong(b.offset());
+                    out.writeInt(b.length());
+                    out.writeInt(b.entries());
+                }
+            }
+            out.writeLong(footerOffset);
+            out.writeLong(MAGIC);
+            writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()), footerOffset);
+            return total;
+        }
+    }
+
+    /**
+     * Encodes the buckets in [from, to) into blocks and writes each one at a
+     * freshly reserved position.
+     */
+    private static <K, V> void writeRange(ConcurrentCustomMap<K, V> table, int from, int to, FileChannel channel,
+                                          AtomicLong position, Codec<? super K> keyCodec,
+                                          Codec<? super V> valueCodec, List<Block> blocks) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BLOCK_BYTES + (BLOCK_BYTES >> 3));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // entry count, patched before the block is written
+        int entries = 0;
+        for (int i = from; i < to; i++) {
+            for (Entry<K, V> e : table.bucketEntries(i)) {
+                keyCodec.write(e.getKey(), out);
+                valueCodec.write(e.getValue(), out);
+                entries++;
+            }
+            if (bytes.size() >= BLOCK_BYTES) {
+                blocks.add(flushBlock(bytes, entries, channel, position));
+                out.writeInt(0);
+                entries = 0;
+            }
+        }
+        if (entries > 0) {
+            blocks.add(flushBlock(bytes, entries, channel, position));
+        }
+    }
+
+    private static Block flushBlock(ByteArrayOutputStream bytes, int entries, FileChannel channel,
+                                    AtomicLong position) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+        buf.putInt(0, entries);
+        int length = buf.remaining();
+        long offset = position.getAndAdd(length);
+        writeFully(channel, buf, offset);
+        bytes.reset();
+        return new Block(offset, length, entries);
+    }
+
+    /**
+     * Returns the number of entries recorded in the footer of a snapshot.
+     */
+    static long entryCount(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readFooter(channel).getLong(0);
+        }
+    }
+
+    /**
+     * Decodes every entry of the snapshot in parallel and hands it to the sink,
+     * which must be safe to call from several threads.
+     *
+     * @return number of entries read
+     */
+    static <K, V> long read(Path file, Codec<? extends K> keyCodec, Codec<? extends V> valueCodec,
+                            BiConsumer<? super K, ? super V> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer footer = readFooter(channel);
+            long total = footer.getLong();
+            int blockCount = footer.getInt();
+            Block[] blocks = new Block[blockCount];
+            for (int b = 0; b < blockCount; b++) {
+                blocks[b] = new Block(footer.getLong(), footer.getInt(), footer.getInt());
+            }
+            try {
+                IntStream.range(0, blockCount).parallel().forEach(b -> {
+                    try {
+                        readBlock(channel, blocks[b], keyCodec, valueCodec, sink);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return total;
+        }
+    }
+
+    private static <K, V> void readBlock(FileChannel channel, Block block, Codec<? extends K> keyCodec,
+                                         Codec<? extends V> valueCodec,
+                                         BiConsumer<? super K, ? super V> sink) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(block.length());
+        readFully(channel, buf, block.offset());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buf.array()));
+        int entries = in.readInt();
+        if (entries != block.entries()) {
+            throw new IOException("Corrupt snapshot block at offset " + block.offset());
+        }
+        for (int i = 0; i < entries; i++) {
+            K key = keyCodec.read(in);
+            V value = valueCodec.read(in);
+            sink.accept(key, value);
+        }
+    }
+
+    /**
+     * Checks header and trailer and returns the footer, positioned at its start.
+     */
+    private static ByteBuffer readFooter(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES + 12 + TRAILER_BYTES) {
+            throw new IOException("Not a map snapshot: file too short");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, 0);
+        if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION) {
+            throw new IOException("Not a map snapshot or unsupported version");
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+        readFully(channel, trailer, size - TRAILER_BYTES);
+        long footerOffset = trailer.getLong(0);
+        if (trailer.getLong(8) != MAGIC || footerOffset < HEADER_BYTES || footerOffset > size - TRAILER_BYTES - 12) {
+            throw new IOException("Snapshot footer missing, file is truncated");
+        }
+        ByteBuffer footer = ByteBuffer.allocate((int) (size - TRAILER_BYTES - footerOffset));
+        readFully(channel, footer, footerOffset);
+        if (footer.capacity() != 12 + footer.getInt(8) * 16L) {
+            throw new IOException("Corrupt snapshot footer");
+        }
+        return footer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+            position += n;
+        }
+        buf.flip();
+    }
+}
@@ -0,0 +1,440 @@
+package concurrentmap;
+
+import utils.DirectBuffers;
+import utils.HashUtils;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Map engine that keeps serialized keys and values in native memory, outside
+ * the Java heap, so holding many mappings adds nothing for the garbage
+ * collector to trace.
+ * <p>
+ * Like {@link IntIntMap}, keys are split across segments that are locked and
+ * grown independently. Each segment owns two direct buffers:
+ * <ul>
+ *   <li>an index: an open-addressing table of 8-byte slots, each holding the
+ *   key's hash and the offset of its record, probed linearly;</li>
+ *   <li>a data log: records of {@code [key length][value length][key][value]}
+ *   appended one after another.</li>
+ * </ul>
+ * Nothing per mapping lives on the heap. Overwritten and removed records stay
+ * in the log as garbage until the log runs out of room, at which point the
+ * segment copies its live records into a fresh log, growing it only if the
+ * live records need it.
+ * <p>
+ * Keys are compared by content. Values are copied in on {@link #put} and out
+ * on {@link #get}, so callers never share a buffer with the map. Readers of a
+ * segment share its read lock; writers take the write lock.
+ * <p>
+ * The native memory is released by {@link #close()}; after that every
+ * operation throws {@link IllegalStateException}. {@link #getAllocatedBytes()}
+ * and {@link #getLiveBytes()} report how much native memory is held and how
+ * much of it stores live mappings.
+ */
+public class OffHeapMap implements MapInterface<byte[], byte[]>, AutoCloseable {
+
+    /** Initial size of a segment's data log, in bytes. */
+    static final int DEFAULT_SEGMENT_BYTES = 64 * 1024;
+
+    /** Segments per available processor when none is given. */
+    static final int SEGMENTS_PER_CPU = 4;
+
+    /** Fraction of used index slots that triggers growing the index. */
+    static final double MAX_LOAD = 0.75;
+
+    private static final int SLOT_BYTES = Long.BYTES;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int MIN_INDEX_SLOTS = 16;
+    private static final int MAX_LOG_BYTES = Integer.MAX_VALUE - 8;
+    // records start past offset 0, so a slot of 0 always means empty
+    private static final int FIRST_RECORD = 8;
+
+    /** One independently locked part of the map, with its own buffers. */
+    private final class Segment {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        ByteBuffer index; // slot = hash << 32 | record offset, 0 = empty
+        int indexMask;
+        int count;
+        ByteBuffer log;
+        int writePos = FIRST_RECORD;
+        long garbage; // bytes of overwritten or removed records
+        boolean closed;
+
+        Segment(int logBytes) {
+            this.index = allocate(MIN_INDEX_SLOTS * SLOT_BYTES);
+            this.indexMask = MIN_INDEX_SLOTS - 1;
+            this.log = allocate(logBytes);
+        }
+
+        void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("map is closed");
+            }
+        }
+
+        long slot(int i) {
+            return index.getLong(i * SLOT_BYTES);
+        }
+
+        void setSlot(int i, long slot) {
+            index.putLong(i * SLOT_BYTES, slot);
+        }
+
+        /**
+         * Returns the slot holding the key, or -1 if it is absent.
+         */
+        int find(int hash, byte[] key) {
+            for (int i = hash & indexMask; ; i = (i + 1) & indexMask) {
+                long slot = slot(i);
+                if (slot == 0) {
+                    return -1;
+                }
+                if ((int) (slot >>> 32) == hash && keyEquals((int) slot, key)) {
+                    return i;
+                }
+            }
+        }
+
+        boolean keyEquals(int offset, byte[] key) {
+            if (log.getInt(offset) != key.length) {
+                return false;
+            }
+            int start = offset + HEADER_BYTES;
+            for (int i = 0; i < key.length; i++) {
+                if (log.get(start + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        byte[] readValue(int offset) {
+            int keyLength = log.getInt(offset);
+            byte[] value = new byte[log.getInt(offset + Integer.BYTES)];
+            log.get(offset + HEADER_BYTES + keyLength, value);
+            return value;
+        }
+
+        int recordBytes(int offset) {
+            return HEADER_BYTES + log.getInt(offset) + log.getInt(offset + Integer.BYTES);
+        }
+
+        /**
+         * Appends a record to the log, compacting or growing it first if needed.
+         *
+         * @return the record's offset
+         */
+        int append(byte[] key, byte[] value) {
+            long size = (long) HEADER_BYTES + key.length + value.length;
+            if (size > MAX_LOG_BYTES - FIRST_RECORD) {
+                throw new IllegalArgumentException("record of " + size + " bytes does not fit a segment");
+            }
+            if (writePos + size > log.capacity()) {
+                relocate((int) size);
+                if (writePos + size > log.capacity()) {
+                    throw new IllegalStateException("segment log is full");
+                }
+            }
+            int offset = writePos;
+            log.putInt(offset, key.length);
+            log.putInt(offset + Integer.BYTES, value.length);
+            log.put(offset + HEADER_BYTES, key);
+            log.put(offset + HEADER_BYTES + key.length, value);
+            writePos += (int) size;
+            liveBytes.addAndGet(size);
+            return offset;
+        }
+
+        /**
+         * Copies the live records into a fresh log with room for {@code needed}
+         * more bytes, dropping the garbage.
+         */
+        void relocate(int needed) {
+            long live = writePos - FIRST_RECORD - garbage;
+            long capacity = log.capacity();
+            while (capacity < FIRST_RECORD + 2 * (live + needed) && capacity < MAX_LOG_BYTES) {
+                capacity = Math.min(capacity * 2, MAX_LOG_BYTES);
+            }
+            ByteBuffer fresh = allocate((int) capacity);
+            int pos = FIRST_RECORD;
+            for (int i = 0; i <= indexMask; i++) {
+                long slot = slot(i);
+                if (slot != 0) {
+                    int offset = (int) slot;
+                    int bytes = recordBytes(offset);
+                    fresh.put(pos, log, offset, bytes);
+                    setSlot(i, (slot & 0xffffffff00000000L) | pos);
+                    pos += bytes;
+                }
+            }
+            release(log);
+            log = fresh;
+            writePos = pos;
+            garbage = 0;
+        }
+
+        void insert(int hash, int offset) {
+            if (count + 1 > (indexMask + 1) * MAX_LOAD) {
+                growIndex();
+            }
+            int i = hash & indexMask;
+            while (slot(i) != 0) {
+                i = (i + 1) & indexMask;
+            }
+            setSlot(i, ((long) hash << 32) | offset);
+            count++;
+        }
+
+        void growIndex() {
+            int slots = (indexMask + 1) * 2;
+            ByteBuffer old = index;
+            int oldSlots = indexMask + 1;
+            index = allocate(slots * SLOT_BYTES);
+            indexMask = slots - 1;
+            for (int i = 0; i < oldSlots; i++) {
+                long slot = old.getLong(i * SLOT_BYTES);
+                if (slot != 0) {
+                    int j = (int) (slot >>> 32) & indexMask;
+                    while (slot(j) != 0) {
+                        j = (j + 1) & indexMask;
+                    }
+                    setSlot(j, slot);
+                }
+            }
+            release(old);
+        }
+
+        /**
+         * Empties the slot by moving later entries of its probe run back,
+         * so the index needs no tombstones.
+         */
+        void deleteSlot(int gap) {
+            for (int j = (gap + 1) & indexMask; ; j = (j + 1) & indexMask) {
+                long slot = slot(j);
+                if (slot == 0) {
+                    break;
+                }
+                int home = (int) (slot >>> 32) & indexMask;
+                boolean stays = gap <= j ? (home > gap && home <= j) : (home > gap || home <= j);
+                if (!stays) {
+                    setSlot(gap, slot);
+                    gap = j;
+                }
+            }
+            setSlot(gap, 0);
+            count--;
+        }
+
+        void discard(int offset) {
+            int bytes = recordBytes(offset);
+            garbage += bytes;
+            liveBytes.addAndGet(-bytes);
+        }
+
+        void free() {
+            release(index);
+            release(log);
+            index = null;
+            log = null;
+            closed = true;
+        }
+    }
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final int segmentMask;
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong liveBytes = new AtomicLong();
+
+    /**
+     * Constructs a map with {@value #SEGMENTS_PER_CPU} segments per available
+     * processor and the default initial log size.
+     */
+    public OffHeapMap() {
+        this(SEGMENTS_PER_CPU * Runtime.getRuntime().availableProcessors(), DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Constructs a map with the given number of segments.
+     *
+     * @param concurrencyLevel number of segments, rounded up to a power of two
+     * @param segmentBytes     initial size of each segment's data log
+     */
+    public OffHeapMap(int concurrencyLevel, int segmentBytes) {
+        if (concurrencyLevel <= 0 || segmentBytes <= FIRST_RECORD) {
+            throw new IllegalArgumentException("concurrency level and segment size must be positive");
+        }
+        int segmentCount = Math.min(concurrencyLevel, 1 << 16) <= 1
+                ? 1 : Integer.highestOneBit(Math.min(concurrencyLevel, 1 << 16) - 1) << 1;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentBytes);
+        }
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        this.segmentMask = segmentCount - 1;
+    }
+
+    private ByteBuffer allocate(int bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        allocatedBytes.addAndGet(bytes);
+        return buffer;
+    }
+
+    private void release(ByteBuffer buffer) {
+        allocatedBytes.addAndGet(-buffer.capacity());
+        DirectBuffers.free(buffer);
+    }
+
+    private static int hash(byte[] key) {
+        return HashUtils.fmix32(Arrays.hashCode(key));
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash >>> segmentShift) & segmentMask];
+    }
+
+    /**
+     * Inserts or updates a mapping, copying both arrays into native memory.
+     * A value of the same length as the old one is overwritten in place.
+     *
+     * @return a copy of the previous value, or null if the key was absent
+     */
+    @Override
+    public byte[] put(byte[] key, byte[] value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        seg.lock.writeLock().lock();
+        try {
+            seg.checkOpen();
+            int i = seg.find(hash, key);
+            if (i >= 0) {
+                int offset = (int) seg.slot(i);
+                byte[] old = seg.readValue(offset);
+                if (old.length == value.length) {
+                    seg.log.put(offset + HEADER_BYTES + key.length, value);
+                    return old;
+                }
+                // the append may relocate the log, so look the slot up again after it
+                int fresh = seg.append(key, value);
+                i = seg.find(hash, key);
+                seg.discard((int) seg.slot(i));
+                seg.setSlot(i, ((long) hash << 32) | fresh);
+                return old;
+            }
+            seg.insert(hash, seg.append(key, value));
+            return null;
+        } finally {
+            seg.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the value for the key, or null if it is absent.
+     */
+    @Override
+    public byte[] get(byte[] key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        seg.lock.readLock().lock();
+        try {
+            seg.checkOpen();
+            int i = seg.find(hash, key);
+            return i < 0 ? null : seg.readValue((int) seg.slot(i));
+        } finally {
+            seg.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a mapping and returns a copy of its value, or null if absent.
+     */
+    @Override
+    public byte[] remove(byte[] key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        seg.lock.writeLock().lock();
+        try {
+            seg.checkOpen();
+            int i = seg.find(hash, key);
+            if (i < 0) {
+                return null;
+            }
+            int offset = (int) seg.slot(i);
+            byte[] old = seg.readValue(offset);
+            seg.discard(offset);
+            seg.deleteSlot(i);
+            return old;
+        } finally {
+            seg.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of mappings.
+     */
+    @Override
+    public int size() {
+        long total = 0;
+        for (Segment seg : segments) {
+            seg.lock.readLock().lock();
+            try {
+                seg.checkOpen();
+                total += seg.count;
+            } finally {
+                seg.lock.readLock().unlock();
+            }
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the native memory currently held by the indexes and logs.
+     *
+     * @return allocated bytes, 0 once closed
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * Returns the bytes of native memory holding live records, headers included.
+     *
+     * @return live record bytes
+     */
+    public long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    /**
+     * Releases all native memory. Waits for operations in flight on each
+     * segment; later operations throw {@link IllegalStateException}.
+     * Closing twice has no effect.
+     */
+    @Override
+    public void close() {
+        for (Segment seg : segments) {
+            seg.lock.writeLock().lock();
+            try {
+                if (!seg.closed) {
+                    seg.free();
+                }
+            } finally {
+                seg.lock.writeLock().unlock();
+            }
+        }
+        liveBytes.set(0);
+    }
+}
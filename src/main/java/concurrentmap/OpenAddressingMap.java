@@ -0,0 +1,323 @@
+package concurrentmap;
+
+import utils.HashStrategy;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Open-addressing map engine with linear probing.
+ * <p>
+ * Keys, values and cached hashes live in flat parallel arrays, so a lookup
+ * scans neighbouring slots instead of chasing Entry and bucket pointers, and
+ * a mapping costs no allocation beyond its key and value.
+ * <p>
+ * Writers lock the stripe of their key's hash from a {@link StripedLocks}
+ * pool, so two writers of the same key are serialized, and claim empty slots
+ * with a CAS, so writers of different keys never take the same slot. Readers
+ * take no lock: a slot's hash is written before its value is published with
+ * release semantics, and readers load the value with acquire semantics.
+ * <p>
+ * Removed mappings leave a tombstone that keeps probe sequences intact and is
+ * reused if the same key comes back. Once the claimed slots, live or deleted,
+ * reach {@link #MAX_LOAD} of the table, a writer locks every stripe and
+ * rebuilds the table, dropping the tombstones and doubling the capacity only
+ * if the live entries need it. Readers keep using the old table until the new
+ * one is published.
+ * <p>
+ * Null keys and values are not supported.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class OpenAddressingMap<K, V> implements MapInterface<K, V> {
+
+    /** Capacity used by the no-argument constructor. */
+    static final int DEFAULT_CAPACITY = 16;
+
+    /** Fraction of claimed slots that triggers a rebuild. */
+    static final double MAX_LOAD = 0.75;
+
+    /** Value of a slot whose mapping has been removed. */
+    private static final Object TOMBSTONE = new Object();
+
+    /** Returned by a put that found no slot to claim. */
+    private static final Object FULL = new Object();
+
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    /**
+     * One generation of the table. Replaced as a whole by a rebuild, never
+     * written once it has been replaced.
+     */
+    private static final class Table {
+        final Object[] keys; // null = never claimed
+        final Object[] values; // null = claimed but not yet published
+        final int[] hashes;
+        final int mask;
+        final int threshold; // most slots that may be claimed
+        final AtomicInteger claimed = new AtomicInteger();
+
+        Table(int capacity) {
+            this.keys = new Object[capacity];
+            this.values = new Object[capacity];
+            this.hashes = new int[capacity];
+            this.mask = capacity - 1;
+            this.threshold = (int) (capacity * MAX_LOAD);
+        }
+
+        /**
+         * Reserves one slot below the threshold, so the table always keeps
+         * an empty slot to end probe sequences.
+         */
+        boolean reserve() {
+            int c;
+            do {
+                c = claimed.get();
+                if (c >= threshold) {
+                    return false;
+                }
+            } while (!claimed.compareAndSet(c, c + 1));
+            return true;
+        }
+    }
+
+    private volatile Table table;
+    private final HashStrategy hashStrategy;
+    private final StripedLocks locks;
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Constructs a map with the default capacity.
+     */
+    public OpenAddressingMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a map with room for the given number of slots.
+     * Keys are hashed with {@link HashStrategy#MURMUR3}: linear probing turns
+     * runs of neighbouring hashes, such as sequential integer keys, into long
+     * probe sequences, so the low bits need to be fully mixed.
+     *
+     * @param initialCapacity number of slots, rounded up to a power of two
+     */
+    public OpenAddressingMap(int initialCapacity) {
+        this(initialCapacity, HashStrategy.MURMUR3, new StripedLocks());
+    }
+
+    /**
+     * Constructs a map with the given capacity, hash strategy and lock pool.
+     *
+     * @param initialCapacity number of slots, rounded up to a power of two
+     * @param hashStrategy    function used to hash keys
+     * @param locks           stripes guarding writers
+     */
+    public OpenAddressingMap(int initialCapacity, HashStrategy hashStrategy, StripedLocks locks) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("initialCapacity must be positive: " + initialCapacity);
+        }
+        this.hashStrategy = hashStrategy;
+        this.locks = locks;
+        this.table = new Table(tableSizeFor(initialCapacity));
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        return n < 0 ? 1 << 30 : n;
+    }
+
+    /**
+     * Inserts or updates a key-value pair.
+     *
+     * @return the previous value, or null if the key was absent
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        int hash = hashStrategy.hash(key);
+        StripedLocks.PaddedLock lock = locks.stripe(hash);
+        while (true) {
+            Table t;
+            lock.lock();
+            try {
+                t = table;
+                Object old = tryPut(t, hash, key, value);
+                if (old != FULL) {
+                    return old == TOMBSTONE ? null : (V) old;
+                }
+            } finally {
+                lock.unlock();
+            }
+            rebuild(t); // table full, outside the stripe lock
+        }
+    }
+
+    /**
+     * Writes the mapping into the given table under the key's stripe lock.
+     *
+     * @return the previous value of the slot (null or a tombstone if the key
+     *         was absent), or {@link #FULL} if no slot may be claimed
+     */
+    private Object tryPut(Table t, int hash, K key, V value) {
+        boolean reserved = false;
+        for (int i = hash & t.mask; ; i = (i + 1) & t.mask) {
+            Object k = SLOT.getAcquire(t.keys, i);
+            if (k == null) {
+                if (!reserved && !(reserved = t.reserve())) {
+                    return FULL;
+                }
+                if (!SLOT.compareAndSet(t.keys, i, null, key)) {
+                    continue; // a writer of another key took the slot
+                }
+                t.hashes[i] = hash;
+                SLOT.setRelease(t.values, i, value);
+                count.increment();
+                return null;
+            }
+            if (k == key || (t.hashes[i] == hash && k.equals(key))) {
+                // only this stripe writes the key's slot, its hash is set
+                Object old = t.values[i];
+                SLOT.setRelease(t.values, i, value);
+                if (old == TOMBSTONE) {
+                    count.increment();
+                }
+                if (reserved) {
+                    t.claimed.decrementAndGet();
+                }
+                return old;
+            }
+        }
+    }
+
+    /**
+     * Retrieves a value by key without locking.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = hashStrategy.hash(key);
+        Table t = table;
+        for (int i = hash & t.mask; ; i = (i + 1) & t.mask) {
+            Object k = SLOT.getAcquire(t.keys, i);
+            if (k == null) {
+                return null;
+            }
+            Object v = SLOT.getAcquire(t.values, i);
+            // a null value is a slot still being filled by another writer
+            if (v != null && t.hashes[i] == hash && (k == key || k.equals(key))) {
+                return v == TOMBSTONE ? null : (V) v;
+            }
+        }
+    }
+
+    /**
+     * Removes a key-value pair, leaving a tombstone in its slot.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = hashStrategy.hash(key);
+        StripedLocks.PaddedLock lock = locks.stripe(hash);
+        lock.lock();
+        try {
+            Table t = table;
+            for (int i = hash & t.mask; ; i = (i + 1) & t.mask) {
+                Object k = SLOT.getAcquire(t.keys, i);
+                if (k == null) {
+                    return null;
+                }
+                if (k == key || (t.hashes[i] == hash && k.equals(key))) {
+                    Object old = t.values[i];
+                    if (old == TOMBSTONE) {
+                        return null;
+                    }
+                    SLOT.setRelease(t.values, i, TOMBSTONE);
+                    count.decrement();
+                    return (V) old;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds a full table while holding every stripe, so no writer is
+     * between claiming a slot and publishing its value.
+     */
+    private void rebuild(Table full) {
+        int stripes = locks.getStripeCount();
+        for (int s = 0; s < stripes; s++) {
+            locks.stripe(s).lock();
+        }
+        try {
+            if (table != full) {
+                return; // another writer rebuilt it first
+            }
+            int live = 0;
+            for (Object v : full.values) {
+                if (v != null && v != TOMBSTONE) {
+                    live++;
+                }
+            }
+            // keep live entries at or below half the threshold after the rebuild
+            int capacity = full.keys.length;
+            while (live >= (capacity * MAX_LOAD) / 2 && capacity < (1 << 30)) {
+                capacity <<= 1;
+            }
+            Table fresh = new Table(capacity);
+            for (int i = 0; i < full.keys.length; i++) {
+                Object v = full.values[i];
+                if (v != null && v != TOMBSTONE) {
+                    int j = full.hashes[i] & fresh.mask;
+                    while (fresh.keys[j] != null) {
+                        j = (j + 1) & fresh.mask;
+                    }
+                    fresh.keys[j] = full.keys[i];
+                    fresh.hashes[j] = full.hashes[i];
+                    fresh.values[j] = v;
+                }
+            }
+            fresh.claimed.set(live);
+            table = fresh; // volatile write publishes the copied slots
+        } finally {
+            for (int s = stripes - 1; s >= 0; s--) {
+                locks.stripe(s).unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries, read from the striped counter.
+     */
+    @Override
+    public int size() {
+        long sum = count.sum();
+        return sum < 0 ? 0 : (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of slots in the current table.
+     */
+    public int getCapacity() {
+        return table.keys.length;
+    }
+
+    /**
+     * Returns the strategy used to hash keys.
+     */
+    public HashStrategy getHashStrategy() {
+        return hashStrategy;
+    }
+}
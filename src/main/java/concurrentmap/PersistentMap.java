@@ -0,0 +1,519 @@
+package concurrentmap;
+
+import utils.DirectBuffers;
+import utils.HashUtils;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent map of byte[] keys to byte[] values whose hash table lives in a
+ * memory-mapped file, so reopening a map does not rebuild it and hot data is
+ * served from the OS page cache.
+ * <p>
+ * The file holds a header, a fixed table of bucket heads and an append-only
+ * log of records split into mapped chunks. Each bucket head points at a chain
+ * of records linked through the log, like the entry chain of {@link Bucket}.
+ * A put appends a new record and links it at the head of its bucket, unlinking
+ * the record it replaces; a remove unlinks the record and appends a tombstone.
+ * Bucket chains are guarded by bucket-level locks drawn from a
+ * {@link StripedLocks} pool, while appends to the log are serialized by a
+ * short log lock, so records are laid out in the order they were written.
+ * The bucket count is fixed when the file is created.
+ * <p>
+ * Crash consistency:
+ * <ul>
+ *   <li>A record is completely written, with a CRC32 of its contents, before
+ *   it is linked, and links are single aligned 8-byte writes, so the mapped
+ *   table never points at a partial record.</li>
+ *   <li>{@link #close()} forces the file to disk and marks it clean; opening a
+ *   clean file only maps it.</li>
+ *   <li>A file that was not closed is recovered on open by replaying the log
+ *   in order and stopping at the first record whose checksum does not match,
+ *   rebuilding the bucket table from scratch. Records carry the epoch of the
+ *   open that wrote them, so records left behind a point where an earlier
+ *   recovery cut the log short are never replayed.</li>
+ *   <li>After a process crash the page cache still holds every completed
+ *   write, so all completed operations survive. After an OS crash or power
+ *   loss, everything written before the last {@link #flush()} survives, plus
+ *   possibly a prefix of the operations that followed it.</li>
+ * </ul>
+ * Replaced and removed records are not reclaimed, so the file grows with the
+ * number of writes rather than the number of live mappings.
+ */
+public class PersistentMap implements MapInterface<byte[], byte[]>, AutoCloseable {
+
+    /** Bucket count used when creating a file without one. */
+    static final int DEFAULT_BUCKETS = 1 << 16;
+
+    /** Size of each mapped log chunk used when creating a file without one. */
+    static final int DEFAULT_CHUNK_BYTES = 64 << 20;
+
+    private static final long FILE_MAGIC = 0x434d41504d415031L;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4096;
+
+    // header fields
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 8;
+    private static final int H_BUCKETS = 12;
+    private static final int H_CHUNK = 16;
+    private static final int H_CLEAN = 20;
+    private static final int H_LOG_END = 24;
+    private static final int H_COUNT = 32;
+    private static final int H_EPOCH = 40;
+
+    // record types
+    private static final int PUT = 0x50555452;
+    private static final int DELETE = 0x44454c52;
+    private static final int PAD = 0x50414452;
+
+    // record layout: [type][crc][next][hash][key length][value length][epoch][key][value]
+    private static final int R_CRC = 4;
+    private static final int R_NEXT = 8;
+    private static final int R_HASH = 16;
+    private static final int R_KEY_LENGTH = 20;
+    private static final int R_VALUE_LENGTH = 24;
+    private static final int R_EPOCH = 28;
+    private static final int RECORD_HEADER = 32;
+
+    // log offset 0 means "no record"
+    private static final long FIRST_RECORD = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer table; // header followed by the bucket heads
+    private final int bucketCount;
+    private final int bucketMask;
+    private final int chunkBytes;
+    private final long logBase; // file position of the first chunk
+    private final StripedLocks locks;
+    private final ReentrantLock logLock = new ReentrantLock();
+    private final AtomicLong count = new AtomicLong();
+    private final boolean recovered;
+    private volatile MappedByteBuffer[] chunks;
+    private long logEnd; // guarded by logLock
+    private final int epoch; // incremented on every open, stamped on each record
+    private volatile boolean closed;
+
+    /**
+     * Opens the map stored in the given file, creating it with the default
+     * bucket count and chunk size if it does not exist.
+     *
+     * @param file the backing file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public PersistentMap(Path file) throws IOException {
+        this(file, DEFAULT_BUCKETS, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Opens the map stored in the given file. The bucket count and chunk size
+     * only apply when the file is created; an existing file keeps its own.
+     *
+     * @param file        the backing file
+     * @param bucketCount number of buckets, rounded up to a power of two
+     * @param chunkBytes  size of each mapped log chunk, bounding the largest record
+     * @throws IOException if the file cannot be opened, mapped or is not a map file
+     */
+    public PersistentMap(Path file, int bucketCount, int chunkBytes) throws IOException {
+        if (bucketCount <= 0 || chunkBytes < 4096) {
+            throw new IllegalArgumentException("bucket count must be positive and chunks at least 4096 bytes");
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            if (created) {
+                bucketCount = bucketCount <= 1 ? 1 : Integer.highestOneBit(bucketCount - 1) << 1;
+                chunkBytes = chunkBytes & ~7;
+            } else {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+                if (header.getLong(H_MAGIC) != FILE_MAGIC || header.getInt(H_VERSION) != VERSION) {
+                    throw new IOException("not a persistent map file: " + file);
+                }
+                bucketCount = header.getInt(H_BUCKETS);
+                chunkBytes = header.getInt(H_CHUNK);
+                DirectBuffers.free(header);
+            }
+            this.bucketCount = bucketCount;
+            this.bucketMask = bucketCount - 1;
+            this.chunkBytes = chunkBytes;
+            this.logBase = align(HEADER_BYTES + (long) bucketCount * Long.BYTES, 4096);
+            this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, logBase);
+            this.locks = new StripedLocks();
+
+            long fileChunks = Math.max(1, (channel.size() - logBase + chunkBytes - 1) / chunkBytes);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[(int) fileChunks];
+            for (int i = 0; i < mapped.length; i++) {
+                mapped[i] = mapChunk(i);
+            }
+            this.chunks = mapped;
+
+            this.epoch = table.getInt(H_EPOCH) + 1;
+            if (created) {
+                table.putLong(H_MAGIC, FILE_MAGIC);
+                table.putInt(H_VERSION, VERSION);
+                table.putInt(H_BUCKETS, bucketCount);
+                table.putInt(H_CHUNK, chunkBytes);
+                logEnd = FIRST_RECORD;
+                recovered = false;
+            } else if (table.getInt(H_CLEAN) == 1) {
+                logEnd = table.getLong(H_LOG_END);
+                count.set(table.getLong(H_COUNT));
+                recovered = false;
+            } else {
+                recover();
+                recovered = true;
+            }
+            // dirty until closed, so a crash from here on triggers recovery
+            table.putInt(H_EPOCH, epoch);
+            table.putInt(H_CLEAN, 0);
+            table.force();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static long align(long n, int to) {
+        return (n + to - 1) / to * to;
+    }
+
+    private MappedByteBuffer mapChunk(int index) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, logBase + (long) index * chunkBytes, chunkBytes);
+    }
+
+    private static int hash(byte[] key) {
+        return HashUtils.fmix32(Arrays.hashCode(key));
+    }
+
+    private int headIndex(int hash) {
+        return HEADER_BYTES + (hash & bucketMask) * Long.BYTES;
+    }
+
+    private ByteBuffer chunk(long offset) {
+        return chunks[(int) (offset / chunkBytes)];
+    }
+
+    private static int at(long offset, int chunkBytes) {
+        return (int) (offset % chunkBytes);
+    }
+
+    private long next(long record) {
+        return chunk(record).getLong(at(record, chunkBytes) + R_NEXT);
+    }
+
+    private void setNext(long record, long next) {
+        chunk(record).putLong(at(record, chunkBytes) + R_NEXT, next);
+    }
+
+    private boolean keyEquals(long record, int hash, byte[] key) {
+        ByteBuffer c = chunk(record);
+        int pos = at(record, chunkBytes);
+        if (c.getInt(pos + R_HASH) != hash || c.getInt(pos + R_KEY_LENGTH) != key.length) {
+            return false;
+        }
+        return c.slice(pos + RECORD_HEADER, key.length).equals(ByteBuffer.wrap(key));
+    }
+
+    private byte[] value(long record) {
+        ByteBuffer c = chunk(record);
+        int pos = at(record, chunkBytes);
+        byte[] value = new byte[c.getInt(pos + R_VALUE_LENGTH)];
+        c.get(pos + RECORD_HEADER + c.getInt(pos + R_KEY_LENGTH), value);
+        return value;
+    }
+
+    /**
+     * Unlinks the record of the key from its bucket chain.
+     *
+     * @return the unlinked record, or 0 if the key is absent
+     */
+    private long unlink(int hash, byte[] key) {
+        int head = headIndex(hash);
+        long prev = 0;
+        for (long r = table.getLong(head); r != 0; prev = r, r = next(r)) {
+            if (keyEquals(r, hash, key)) {
+                if (prev == 0) {
+                    table.putLong(head, next(r));
+                } else {
+                    setNext(prev, next(r));
+                }
+                return r;
+            }
+        }
+        return 0;
+    }
+
+    private void link(int hash, long record) {
+        int head = headIndex(hash);
+        setNext(record, table.getLong(head));
+        table.putLong(head, record);
+    }
+
+    /**
+     * Writes a complete, checksummed record at the end of the log.
+     *
+     * @return the record's log offset
+     */
+    private long append(int type, int hash, byte[] key, byte[] value) {
+        long size = align((long) RECORD_HEADER + key.length + value.length, 8);
+        if (size > chunkBytes) {
+            throw new IllegalArgumentException("record of " + size + " bytes exceeds the chunk size " + chunkBytes);
+        }
+        logLock.lock();
+        try {
+            long offset = logEnd;
+            int pos = at(offset, chunkBytes);
+            if (pos + size > chunkBytes) {
+                // does not fit the rest of this chunk, continue at the next one
+                if (chunkBytes - pos >= RECORD_HEADER) {
+                    chunk(offset).putInt(pos, PAD);
+                }
+                offset += chunkBytes - pos;
+                pos = 0;
+            }
+            int index = (int) (offset / chunkBytes);
+            if (index >= chunks.length) {
+                MappedByteBuffer[] grown = Arrays.copyOf(chunks, index + 1);
+                grown[index] = mapChunk(index);
+                chunks = grown;
+            }
+            ByteBuffer c = chunks[index];
+            c.putLong(pos + R_NEXT, 0);
+            c.putInt(pos + R_HASH, hash);
+            c.putInt(pos + R_KEY_LENGTH, key.length);
+            c.putInt(pos + R_VALUE_LENGTH, value.length);
+            c.putInt(pos + R_EPOCH, epoch);
+            c.put(pos + RECORD_HEADER, key);
+            c.put(pos + RECORD_HEADER + key.length, value);
+            c.putInt(pos + R_CRC, checksum(type, c, pos, key.length + value.length));
+            c.putInt(pos, type); // written last: the record exists once its type is set
+            logEnd = offset + size;
+            return offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    /**
+     * Checksums everything but the type, checksum and chain link, which is
+     * rewritten when neighbours are unlinked and rebuilt on recovery.
+     */
+    private static int checksum(int type, ByteBuffer c, int pos, int payload) {
+        CRC32 crc = new CRC32();
+        crc.update(c.slice(pos + R_HASH, RECORD_HEADER - R_HASH + payload));
+        return (int) crc.getValue() ^ type;
+    }
+
+    /**
+     * Rebuilds the bucket table by replaying the log up to the first record
+     * that is missing, fails its checksum or belongs to an earlier epoch.
+     * <p>
+     * Epochs never decrease along a valid log. A record of an earlier epoch
+     * found after newer ones is a leftover from before a previous recovery
+     * cut the log short, and must not be replayed.
+     */
+    private void recover() {
+        for (int i = 0; i < bucketCount; i++) {
+            table.putLong(HEADER_BYTES + i * Long.BYTES, 0);
+        }
+        long offset = FIRST_RECORD;
+        long live = 0;
+        int lastEpoch = Integer.MIN_VALUE;
+        while (offset / chunkBytes < chunks.length) {
+            int pos = at(offset, chunkBytes);
+            ByteBuffer c = chunk(offset);
+            if (chunkBytes - pos < RECORD_HEADER || c.getInt(pos) == PAD) {
+                offset += chunkBytes - pos;
+                continue;
+            }
+            int type = c.getInt(pos);
+            int keyLength = c.getInt(pos + R_KEY_LENGTH);
+            int valueLength = c.getInt(pos + R_VALUE_LENGTH);
+            if ((type != PUT && type != DELETE) || keyLength < 0 || valueLength < 0
+                    || (long) pos + RECORD_HEADER + keyLength + valueLength > chunkBytes
+                    || c.getInt(pos + R_CRC) != checksum(type, c, pos, keyLength + valueLength)
+                    || c.getInt(pos + R_EPOCH) < lastEpoch) {
+                break; // end of the log, a record torn by the crash, or a stale leftover
+            }
+            lastEpoch = c.getInt(pos + R_EPOCH);
+            int hash = c.getInt(pos + R_HASH);
+            byte[] key = new byte[keyLength];
+            c.get(pos + RECORD_HEADER, key);
+            if (unlink(hash, key) != 0) {
+                live--;
+            }
+            if (type == PUT) {
+                link(hash, offset);
+                live++;
+            }
+            offset += align((long) RECORD_HEADER + keyLength + valueLength, 8);
+        }
+        logEnd = offset;
+        count.set(live);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("map is closed");
+        }
+    }
+
+    /**
+     * Inserts or updates a mapping.
+     *
+     * @return a copy of the previous value, or null if the key was absent
+     */
+    @Override
+    public byte[] put(byte[] key, byte[] value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        int hash = hash(key);
+        StripedLocks.PaddedLock lock = locks.stripe(hash & bucketMask);
+        lock.lock();
+        try {
+            checkOpen();
+            long record = append(PUT, hash, key, value);
+            long old = unlink(hash, key);
+            if (old == 0) {
+                count.incrementAndGet();
+            }
+            link(hash, record);
+            return old == 0 ? null : value(old);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the value for the key, or null if it is absent.
+     */
+    @Override
+    public byte[] get(byte[] key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = hash(key);
+        StripedLocks.PaddedLock lock = locks.stripe(hash & bucketMask);
+        lock.lock();
+        try {
+            checkOpen();
+            for (long r = table.getLong(headIndex(hash)); r != 0; r = next(r)) {
+                if (keyEquals(r, hash, key)) {
+                    return value(r);
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a mapping and returns a copy of its value, or null if absent.
+     */
+    @Override
+    public byte[] remove(byte[] key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = hash(key);
+        StripedLocks.PaddedLock lock = locks.stripe(hash & bucketMask);
+        lock.lock();
+        try {
+            checkOpen();
+            long record = unlink(hash, key);
+            if (record == 0) {
+                return null;
+            }
+            append(DELETE, hash, key, new byte[0]);
+            count.decrementAndGet();
+            return value(record);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of mappings.
+     */
+    @Override
+    public int size() {
+        checkOpen();
+        return (int) Math.min(count.get(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns true if opening this map had to replay the log because the
+     * file was not closed cleanly.
+     */
+    public boolean wasRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Forces every completed write to disk. Operations completed before this
+     * call survive an OS crash or power loss.
+     */
+    public void flush() {
+        logLock.lock();
+        try {
+            checkOpen();
+            for (MappedByteBuffer c : chunks) {
+                c.force();
+            }
+            table.putLong(H_LOG_END, logEnd);
+            table.putLong(H_COUNT, count.get());
+            table.force();
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the map, marks the file clean and unmaps it. Waits for
+     * operations in flight; later operations throw {@link IllegalStateException}.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        int stripes = locks.getStripeCount();
+        for (int s = 0; s < stripes; s++) {
+            locks.stripe(s).lock();
+        }
+        // flush() only takes logLock, so hold it until the buffers are gone
+        logLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            flush();
+            table.putInt(H_CLEAN, 1);
+            table.force();
+            closed = true;
+            for (MappedByteBuffer c : chunks) {
+                DirectBuffers.free(c);
+            }
+            DirectBuffers.free(table);
+            channel.close();
+        } finally {
+            logLock.unlock();
+            for (int s = stripes - 1; s >= 0; s--) {
+                locks.stripe(s).unlock();
+            }
+        }
+    }
+}
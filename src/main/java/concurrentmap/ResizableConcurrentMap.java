@@ -1,24 +1,70 @@
 package concurrentmap;
 
+import utils.HashStrategy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
  * Resizable wrapper for ConcurrentCustomMap.
  * Monitors average bucket load and resizes automatically.
+ * <p>
+ * Resizing is incremental and cooperative: the old and new tables coexist
+ * while buckets are migrated in strides. Each migrated bucket leaves a
+ * {@link ForwardingNode} behind, so operations that reach the old table are
+ * redirected to the new one, and every writer arriving during a resize
+ * helps by moving one stride.
+ * <p>
+ * The map can be saved with {@link #snapshot} and loaded back with
+ * {@link #restore}, both of which work on bucket ranges in parallel.
  *
  * @param <K> key type
  * @param <V> value type
  */
-public class ResizableConcurrentMap<K, V> {
+public class ResizableConcurrentMap<K, V> implements MapInterface<K, V> {
+
+    /** Smallest number of buckets a helper claims at once. */
+    private static final int MIN_TRANSFER_STRIDE = 16;
+
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
 
     private final AtomicReference<ConcurrentCustomMap<K, V>> mapRef;
+    private final SingleFlight<K, V> flights = new SingleFlight<>();
     private final ReentrantLock resizeLock = new ReentrantLock();
     private final double loadFactorThreshold;
     private final int resizeMultiplier;
     private final Supplier<? extends BucketInterface<K, V>> bucketSupplier;
 
+    /** Migration in progress, or null when no resize is running. */
+    private volatile Transfer<K, V> transfer;
+
+    /**
+     * State of one resize: the two tables and the stride bookkeeping.
+     */
+    private static final class Transfer<K, V> {
+        final ConcurrentCustomMap<K, V> source;
+        final ConcurrentCustomMap<K, V> target;
+        final int stride;
+        final AtomicInteger nextIndex = new AtomicInteger(); // start of the next unclaimed stride
+        final AtomicInteger remaining; // buckets not yet migrated
+
+        Transfer(ConcurrentCustomMap<K, V> source, ConcurrentCustomMap<K, V> target) {
+            this.source = source;
+            this.target = target;
+            int capacity = source.getCapacity();
+            this.stride = Math.max(capacity / (8 * NCPU), MIN_TRANSFER_STRIDE);
+            this.remaining = new AtomicInteger(capacity);
+        }
+    }
+
     /**
      * Default constructor using lock-based Bucket.
      */
@@ -38,57 +84,356 @@ public class ResizableConcurrentMap<K, V> {
                                   double loadFactorThreshold,
                                   int resizeMultiplier,
                                   Supplier<? extends BucketInterface<K, V>> bucketSupplier) {
+        this(initialCapacity, loadFactorThreshold, resizeMultiplier, bucketSupplier, HashStrategy.SPREAD);
+    }
+
+    /**
+     * Constructor with custom parameters and hash strategy.
+     * The strategy is kept across resizes, so cached entry hashes stay valid.
+     *
+     * @param initialCapacity     initial number of buckets
+     * @param loadFactorThreshold threshold to trigger resize
+     * @param resizeMultiplier    how much to grow on resize
+     * @param bucketSupplier      supplier to create bucket instances
+     * @param hashStrategy        function used to hash keys
+     */
+    public ResizableConcurrentMap(int initialCapacity,
+                                  double loadFactorThreshold,
+                                  int resizeMultiplier,
+                                  Supplier<? extends BucketInterface<K, V>> bucketSupplier,
+                                  HashStrategy hashStrategy) {
         this.bucketSupplier = bucketSupplier;
-        this.mapRef = new AtomicReference<>(new ConcurrentCustomMap<>(initialCapacity, bucketSupplier));
+        this.mapRef = new AtomicReference<>(new ConcurrentCustomMap<>(initialCapacity, bucketSupplier, hashStrategy));
         this.loadFactorThreshold = loadFactorThreshold;
         this.resizeMultiplier = resizeMultiplier;
     }
 
-    public void put(K key, V value) {
-        mapRef.get().put(key, value);
-        checkResize();
+    @Override
+    public V put(K key, V value) {
+        V old = mapRef.get().put(key, value);
+        afterWrite();
+        return old;
+    }
+
+    /**
+     * Stores every mapping of the given map, one bucket lock per group of
+     * keys. If the batch would push the load over the threshold, the table is
+     * grown once up front instead of resizing repeatedly under the batch.
+     *
+     * @see ConcurrentCustomMap#putAll
+     */
+    public void putAll(Map<? extends K, ? extends V> m) {
+        long expected = (long) size() + m.size();
+        if ((double) expected / mapRef.get().getCapacity() > loadFactorThreshold) {
+            ensureCapacity(expected);
+        }
+        mapRef.get().putAll(m);
+        afterWrite();
     }
 
+    /**
+     * Looks up several keys at once, one bucket visit per group of keys.
+     *
+     * @see ConcurrentCustomMap#getAll
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        return mapRef.get().getAll(keys);
+    }
+
+    /**
+     * Adds the mapping only if the key is absent.
+     *
+     * @see ConcurrentCustomMap#putIfAbsent
+     */
+    public V putIfAbsent(K key, V value) {
+        V current = mapRef.get().putIfAbsent(key, value);
+        afterWrite();
+        return current;
+    }
+
+    /**
+     * Replaces the value of the key only if it equals {@code expectedValue}.
+     *
+     * @see ConcurrentCustomMap#replace
+     */
+    public boolean replace(K key, V expectedValue, V newValue) {
+        boolean replaced = mapRef.get().replace(key, expectedValue, newValue);
+        Transfer<K, V> t = transfer;
+        if (t != null) {
+            helpTransfer(t);
+        }
+        return replaced;
+    }
+
+    /**
+     * Removes the mapping only if the key maps to {@code expectedValue}.
+     *
+     * @see ConcurrentCustomMap#remove(Object, Object)
+     */
+    public boolean remove(K key, V expectedValue) {
+        boolean removed = mapRef.get().remove(key, expectedValue);
+        Transfer<K, V> t = transfer;
+        if (t != null) {
+            helpTransfer(t);
+        }
+        return removed;
+    }
+
+    /**
+     * Atomically recomputes the mapping of the key.
+     *
+     * @see ConcurrentCustomMap#compute
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        V value = mapRef.get().compute(key, remappingFunction);
+        afterWrite();
+        return value;
+    }
+
+    /**
+     * Maps the key to the result of the function if it is absent.
+     *
+     * @see ConcurrentCustomMap#computeIfAbsent
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V value = mapRef.get().computeIfAbsent(key, mappingFunction);
+        afterWrite();
+        return value;
+    }
+
+    /**
+     * Recomputes the value of a present key.
+     *
+     * @see ConcurrentCustomMap#computeIfPresent
+     */
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        V value = mapRef.get().computeIfPresent(key, remappingFunction);
+        afterWrite();
+        return value;
+    }
+
+    /**
+     * Maps an absent key to the value or combines it with the current one.
+     *
+     * @see ConcurrentCustomMap#merge
+     */
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        V merged = mapRef.get().merge(key, value, remappingFunction);
+        afterWrite();
+        return merged;
+    }
+
+    /**
+     * Returns the value of the key, loading it once for all concurrent
+     * callers on a miss. The placeholders of running loads live outside the
+     * table, so they survive resizes.
+     *
+     * @see ConcurrentCustomMap#getOrLoad
+     */
+    public V getOrLoad(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        return value != null ? value : flights.load(key, loader, this::get, this::put);
+    }
+
+    /**
+     * Helps a running resize, or starts one if the write pushed the load
+     * over the threshold.
+     */
+    private void afterWrite() {
+        Transfer<K, V> t = transfer;
+        if (t != null) {
+            helpTransfer(t);
+        } else {
+            checkResize();
+        }
+    }
+
+    @Override
     public V get(K key) {
         return mapRef.get().get(key);
     }
 
+    @Override
     public V remove(K key) {
-        return mapRef.get().remove(key);
+        V removed = mapRef.get().remove(key);
+        Transfer<K, V> t = transfer;
+        if (t != null) {
+            helpTransfer(t);
+        }
+        return removed;
     }
 
+    /**
+     * Returns the number of entries from the striped counter, without
+     * walking any bucket. Alias for {@code size(SizeMode.APPROXIMATE)}.
+     */
+    @Override
     public int size() {
-        int total = 0;
-        for (int load : mapRef.get().getBucketLoadDistribution()) {
-            total += load;
+        return size(SizeMode.APPROXIMATE);
+    }
+
+    /**
+     * Returns the number of entries using the given counting mode.
+     * The counter is shared by the old and new table during a resize.
+     *
+     * @param mode how to count the entries
+     * @return number of entries
+     */
+    public int size(SizeMode mode) {
+        ConcurrentCustomMap<K, V> current = mapRef.get();
+        if (mode != SizeMode.EXACT) {
+            return current.size();
+        }
+        int total = current.size(SizeMode.EXACT);
+        Transfer<K, V> t = transfer;
+        if (t != null && t.source == current) {
+            // Migrated buckets are empty in the old table, count them in the new one
+            total += t.target.size(SizeMode.EXACT);
         }
         return total;
     }
 
+    /**
+     * Returns true while a resize is migrating buckets.
+     */
+    public boolean isResizing() {
+        return transfer != null;
+    }
+
     private void checkResize() {
         ConcurrentCustomMap<K, V> current = mapRef.get();
         double avgLoad = (double) size() / current.getCapacity();
 
         if (avgLoad > loadFactorThreshold && resizeLock.tryLock()) {
             try {
-                if ((double) size() / current.getCapacity() > loadFactorThreshold) {
+                if (transfer == null && mapRef.get() == current
+                        && (double) size() / current.getCapacity() > loadFactorThreshold) {
                     resize(current);
                 }
             } finally {
                 resizeLock.unlock();
             }
         }
+        Transfer<K, V> t = transfer;
+        if (t != null) {
+            helpTransfer(t);
+        }
     }
 
+    /**
+     * Publishes a new table; the entries are moved later by helping writers.
+     * The new table starts with empty slots, so a resize allocates buckets
+     * only for slots that receive entries.
+     */
     private void resize(ConcurrentCustomMap<K, V> oldMap) {
         int newCapacity = oldMap.getCapacity() * resizeMultiplier;
-        ConcurrentCustomMap<K, V> newMap = new ConcurrentCustomMap<>(newCapacity, bucketSupplier);
+        ConcurrentCustomMap<K, V> newMap = new ConcurrentCustomMap<>(newCapacity, bucketSupplier,
+                oldMap.getHashStrategy(), oldMap.getCounter());
+        transfer = new Transfer<>(oldMap, newMap);
+    }
+
+    /**
+     * Claims and migrates one stride of buckets. The helper that migrates the
+     * last stride swaps the new table in and ends the resize.
+     */
+    private void helpTransfer(Transfer<K, V> t) {
+        int capacity = t.source.getCapacity();
+        if (t.nextIndex.get() >= capacity) {
+            return; // every stride already claimed
+        }
+        int start = t.nextIndex.getAndAdd(t.stride);
+        if (start >= capacity) {
+            return;
+        }
+        int end = Math.min(start + t.stride, capacity);
+        for (int i = start; i < end; i++) {
+            t.source.transferBucket(i, t.target);
+        }
+        if (t.remaining.addAndGet(start - end) == 0) {
+            mapRef.set(t.target); // atomic swap
+            transfer = null;
+        }
+    }
 
-        for (Entry<K, V> entry : oldMap.entrySet()) {
-            newMap.put(entry.getKey(), entry.getValue());
+    /**
+     * Drives the resize in progress, if any, to completion. Strides claimed by
+     * other threads may still be moving when every stride has been claimed,
+     * so this spins until the last of them publishes the new table.
+     */
+    private void finishTransfer() {
+        Transfer<K, V> t;
+        while ((t = transfer) != null) {
+            helpTransfer(t);
+            Thread.onSpinWait();
         }
+    }
 
-        mapRef.set(newMap); // atomic swap
+    /**
+     * Writes every entry to a compact binary file, replacing it.
+     * Bucket ranges are encoded in parallel and written as independent blocks
+     * (see {@link MapSnapshot}). A running resize is finished first and no new
+     * one starts until the snapshot is written; writers are not blocked, so
+     * the snapshot is weakly consistent, like {@link ConcurrentCustomMap#entrySet()}.
+     *
+     * @param file       destination file
+     * @param keyCodec   codec for keys
+     * @param valueCodec codec for values
+     * @return number of entries written
+     * @throws IOException if the file cannot be written
+     */
+    public long snapshot(Path file, Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        resizeLock.lock();
+        try {
+            finishTransfer();
+            return MapSnapshot.write(mapRef.get(), file, keyCodec, valueCodec);
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    /**
+     * Loads the entries of a snapshot written by {@link #snapshot}, keeping
+     * existing mappings for keys the snapshot does not contain.
+     * The entry count stored in the snapshot is used to grow the table once,
+     * up front, to a capacity that holds the current and restored entries
+     * under the load factor threshold; blocks are then decoded in parallel and
+     * inserted straight into that table, so loading never triggers a resize.
+     *
+     * @param file       snapshot file
+     * @param keyCodec   codec for keys
+     * @param valueCodec codec for values
+     * @return number of entries read
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public long restore(Path file, Codec<? extends K> keyCodec, Codec<? extends V> valueCodec) throws IOException {
+        ensureCapacity(size() + MapSnapshot.entryCount(file));
+        return MapSnapshot.read(file, keyCodec, valueCodec, (k, v) -> mapRef.get().put(k, v));
+    }
+
+    /**
+     * Grows the table in a single resize, if needed, so that it holds the
+     * given number of entries without exceeding the load factor threshold.
+     * The new capacity is the current one times a power of the resize
+     * multiplier, as if the usual resizes had happened one after another.
+     */
+    private void ensureCapacity(long expectedEntries) {
+        resizeLock.lock();
+        try {
+            finishTransfer();
+            ConcurrentCustomMap<K, V> current = mapRef.get();
+            long capacity = current.getCapacity();
+            int multiplier = Math.max(resizeMultiplier, 2);
+            while ((double) expectedEntries / capacity > loadFactorThreshold && capacity * multiplier <= 1 << 30) {
+                capacity *= multiplier;
+            }
+            if (capacity > current.getCapacity()) {
+                transfer = new Transfer<>(current, new ConcurrentCustomMap<>((int) capacity, bucketSupplier,
+                        current.getHashStrategy(), current.getCounter()));
+                finishTransfer();
+            }
+        } finally {
+            resizeLock.unlock();
+        }
     }
 
     /**
@@ -0,0 +1,81 @@
+package concurrentmap;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same missing key, so that one caller
+ * runs the loader while the others wait for its result.
+ * <p>
+ * The first caller to miss installs a {@link CompletableFuture} placeholder
+ * for the key with a single CAS into a map of {@link LockFreeBucket}s;
+ * callers that find a placeholder wait on it instead of loading. No lock is
+ * held while the loader runs, so loads of other keys, even in the same
+ * bucket of the data map, proceed in parallel. The placeholder is removed
+ * once the value is stored, and callers arriving after that find the value
+ * itself.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class SingleFlight<K, V> {
+
+    // only keys being loaded right now, so a small table is enough
+    private final ConcurrentCustomMap<K, CompletableFuture<V>> flights =
+            new ConcurrentCustomMap<>(64, LockFreeBucket::new);
+
+    /**
+     * Loads a key after the caller's lookup missed, or waits for the load
+     * already running for it.
+     *
+     * @param key    the missing key
+     * @param loader computes the value; may return null to store nothing
+     * @param lookup reads the key again, to pick up a load that finished
+     *               after the caller's miss; a hit is a read like any other
+     *               and may mark the entry as used, but the lookup must not
+     *               count hits or misses, as the caller already did
+     * @param store  stores the loaded value
+     * @return the loaded value, or null if the loader returned null
+     * @throws RuntimeException the loader's exception, in every waiting caller
+     */
+    V load(K key, Function<? super K, ? extends V> loader, Function<? super K, ? extends V> lookup,
+           BiConsumer<? super K, ? super V> store) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = flights.putIfAbsent(key, mine);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            V value = lookup.apply(key);
+            if (value == null) {
+                value = loader.apply(key);
+                if (value != null) {
+                    store.accept(key, value);
+                }
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, mine);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
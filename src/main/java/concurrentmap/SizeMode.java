@@ -0,0 +1,20 @@
+package concurrentmap;
+
+/**
+ * Selects how a map computes its size.
+ */
+public enum SizeMode {
+
+    /**
+     * Sums the striped entry counter maintained by put/remove.
+     * Costs O(number of counter cells) and may briefly lag writes that are
+     * still in flight, which makes it suitable for hot paths like resize checks.
+     */
+    APPROXIMATE,
+
+    /**
+     * Walks every bucket and counts its entries under the bucket's lock.
+     * Costs O(n) and reflects the stored entries rather than the counter.
+     */
+    EXACT
+}
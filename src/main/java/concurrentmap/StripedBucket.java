@@ -0,0 +1,254 @@
+package concurrentmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Linked-chain bucket that owns no lock of its own: it is guarded by one of
+ * the shared locks of a {@link StripedLocks} pool, so an empty bucket costs
+ * three references. Buckets sharing a stripe serialize against each other.
+ * <p>
+ * Created through {@link StripedLocks#newBucket()}.
+ *
+ * @param <K> Type of key
+ * @param <V> Type of value
+ */
+public class StripedBucket<K, V> implements BucketInterface<K, V> {
+    private Entry<K, V> head; // Head of linked list
+    private final StripedLocks.PaddedLock lock; // Stripe shared with other buckets
+    private ForwardingNode<K, V> forward; // Set once entries moved to a resized table
+
+    /**
+     * Constructs a new empty StripedBucket guarded by the given stripe.
+     */
+    StripedBucket(StripedLocks.PaddedLock lock) {
+        this.lock = lock;
+    }
+
+    /**
+     * Inserts or updates a key-value pair under the stripe lock.
+     *
+     * @param hash  the hash of the key
+     * @param key   the key to insert or update
+     * @param value the value to associate with the key
+     * @return the previous value if key existed, otherwise null
+     */
+    @Override
+    public V put(int hash, K key, V value) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> last = null;
+                for (Entry<K, V> current = head; current != null; current = current.next) {
+                    if (current.keyEquals(hash, key)) {
+                        V oldValue = current.value;
+                        current.value = value;
+                        return oldValue;
+                    }
+                    last = current;
+                }
+                Entry<K, V> entry = new Entry<>(hash, key, value);
+                if (last == null) {
+                    head = entry;
+                } else {
+                    last.next = entry;
+                }
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).put(hash, key, value);
+    }
+
+    /**
+     * Retrieves a value by key under the stripe lock.
+     *
+     * @param hash the hash of the key
+     * @param key the key to look up
+     * @return the value if found, otherwise null
+     */
+    @Override
+    public V get(int hash, K key) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                return find(hash, key);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).get(hash, key);
+    }
+
+    private V find(int hash, K key) {
+        for (Entry<K, V> current = head; current != null; current = current.next) {
+            if (current.keyEquals(hash, key)) {
+                return current.access();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes a key-value pair under the stripe lock.
+     *
+     * @param hash the hash of the key
+     * @param key the key to remove
+     * @return the removed value, or null if key not found
+     */
+    @Override
+    public V remove(int hash, K key) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> prev = null;
+                for (Entry<K, V> current = head; current != null; prev = current, current = current.next) {
+                    if (current.keyEquals(hash, key)) {
+                        if (prev == null) {
+                            head = current.next;
+                        } else {
+                            prev.next = current.next;
+                        }
+                        return current.value;
+                    }
+                }
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).remove(hash, key);
+    }
+
+    /**
+     * Computes a new value for the key under the stripe lock, inserting, updating or
+     * unlinking its entry according to the result.
+     *
+     * @param hash              the hash of the key
+     * @param key               the key to compute a value for
+     * @param remappingFunction computes the new value from the key and the current value
+     * @return the new value, or null if the key is now absent
+     */
+    @Override
+    public V compute(int hash, K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        ForwardingNode<K, V> fwd;
+        lock.lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> prev = null;
+                Entry<K, V> current = head;
+                while (current != null && !current.keyEquals(hash, key)) {
+                    prev = current;
+                    current = current.next;
+                }
+                V newValue = remappingFunction.apply(key, current == null ? null : current.value);
+                if (current == null) {
+                    if (newValue != null) {
+                        Entry<K, V> entry = new Entry<>(hash, key, newValue);
+                        if (prev == null) {
+                            head = entry;
+                        } else {
+                            prev.next = entry;
+                        }
+                    }
+                } else if (newValue == null) {
+                    if (prev == null) {
+                        head = current.next;
+                    } else {
+                        prev.next = current.next;
+                    }
+                } else {
+                    current.value = newValue;
+                }
+                return newValue;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).compute(hash, key, remappingFunction);
+    }
+
+    /**
+     * Returns the number of entries in this bucket under the stripe lock.
+     *
+     * @return the total number of entries in this bucket
+     */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            int count = 0;
+            for (Entry<K, V> current = head; current != null; current = current.next) {
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries in this bucket. Alias for size().
+     *
+     * @return the total number of entries in this bucket
+     */
+    @Override
+    public int getLoad() {
+        return size();
+    }
+
+    /**
+     * Returns a snapshot list of all entries in this bucket, taken under the stripe lock.
+     *
+     * @return a list of {@link Entry} objects currently stored in this bucket
+     */
+    @Override
+    public List<Entry<K, V>> getEntries() {
+        lock.lock();
+        try {
+            List<Entry<K, V>> entries = new ArrayList<>();
+            for (Entry<K, V> current = head; current != null; current = current.next) {
+                entries.add(current);
+            }
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Seals this bucket under the stripe lock and copies its chain into the
+     * target table once the lock is released.
+     *
+     * @param target the table receiving the entries
+     */
+    @Override
+    public void transferTo(ConcurrentCustomMap<K, V> target) {
+        ForwardingNode<K, V> fwd = new ForwardingNode<>(target);
+        Entry<K, V> chain;
+        lock.lock();
+        try {
+            if (forward != null) {
+                return; // already migrated
+            }
+            chain = head;
+            head = null;
+            forward = fwd;
+        } finally {
+            lock.unlock();
+        }
+        for (Entry<K, V> current = chain; current != null; current = current.next) {
+            target.getBucket(current.hash).put(current.hash, current.key, current.value);
+        }
+        fwd.complete();
+    }
+}
@@ -0,0 +1,127 @@
+package concurrentmap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+
+/**
+ * Fixed pool of padded locks shared by many {@link StripedBucket}s.
+ * <p>
+ * Each {@link Bucket} owns a ReentrantLock plus its AQS state, so a table of a
+ * million buckets carries a million locks and every resize allocates more.
+ * With striping, the number of locks is fixed when the pool is created and
+ * buckets are plain chain heads that borrow one of them. Buckets are assigned
+ * stripes round-robin in creation order, so any {@code stripes} consecutively
+ * created buckets never share a lock. Tables created by a resize draw from
+ * the same pool.
+ * <p>
+ * Use it as the bucket supplier of a map:
+ * <pre>{@code
+ * StripedLocks stripes = new StripedLocks();
+ * new ConcurrentCustomMap<String, Integer>(1 << 20, stripes::newBucket);
+ * }</pre>
+ */
+public final class StripedLocks {
+
+    /** Default number of stripes per available processor. */
+    static final int STRIPES_PER_CPU = 4;
+
+    private final PaddedLock[] locks;
+    private final AtomicInteger nextStripe = new AtomicInteger();
+
+    /**
+     * Creates a pool with {@value #STRIPES_PER_CPU} stripes per available processor.
+     */
+    public StripedLocks() {
+        this(STRIPES_PER_CPU * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a pool with the given number of stripes.
+     *
+     * @param stripes number of locks in the pool
+     * @throws IllegalArgumentException if {@code stripes} is not positive
+     */
+    public StripedLocks(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        }
+        this.locks = new PaddedLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new PaddedLock();
+        }
+    }
+
+    /**
+     * Creates an empty bucket guarded by the next stripe of this pool.
+     *
+     * @param <K> type of key
+     * @param <V> type of value
+     * @return a new bucket sharing one of this pool's locks
+     */
+    public <K, V> StripedBucket<K, V> newBucket() {
+        int stripe = Math.floorMod(nextStripe.getAndIncrement(), locks.length);
+        return new StripedBucket<>(locks[stripe]);
+    }
+
+    /**
+     * Returns the stripe guarding the given non-negative hash.
+     * Used by engines that lock by key rather than by bucket.
+     */
+    PaddedLock stripe(int hash) {
+        return locks[hash % locks.length];
+    }
+
+    /**
+     * Returns the number of locks in this pool.
+     *
+     * @return stripe count
+     */
+    public int getStripeCount() {
+        return locks.length;
+    }
+
+    /**
+     * Non-reentrant exclusive lock whose state is followed by a cache line of
+     * padding, so locks allocated back to back do not falsely share a line.
+     * Buckets never re-acquire their lock: operations that hit a migrated
+     * bucket release it before forwarding, so reentrancy is not needed.
+     */
+    @SuppressWarnings("unused")
+    static final class PaddedLock extends AbstractQueuedSynchronizer {
+        private static final long serialVersionUID = 1L;
+
+        private long p0, p1, p2, p3, p4, p5, p6, p7;
+
+        void lock() {
+            acquire(1);
+        }
+
+        void unlock() {
+            release(1);
+        }
+
+        @Override
+        protected boolean tryAcquire(int arg) {
+            if (compareAndSetState(0, 1)) {
+                setExclusiveOwnerThread(Thread.currentThread());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected boolean tryRelease(int arg) {
+            if (getExclusiveOwnerThread() != Thread.currentThread()) {
+                throw new IllegalMonitorStateException();
+            }
+            setExclusiveOwnerThread(null);
+            setState(0);
+            return true;
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return getState() == 1;
+        }
+    }
+}
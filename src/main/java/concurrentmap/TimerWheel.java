@@ -0,0 +1,130 @@
+package concurrentmap;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel holding one timer per expiring {@link Entry}.
+ * <p>
+ * Each level is a ring of 64 slots, each slot a doubly linked list of timers.
+ * A slot of level 0 covers about a millisecond and every level's slot spans
+ * the whole ring of the level below, so five levels reach past two weeks.
+ * Scheduling links a timer into the slot of its deadline in the finest level
+ * whose ring still reaches it, which is O(1). Advancing the clock empties the
+ * slots the clock moved past: due timers are handed to the caller and the
+ * rest cascade down to a finer level, so a timer is touched a bounded number
+ * of times over its life and no pass ever looks at timers that are not due
+ * for a long time.
+ * <p>
+ * Not thread-safe; the owner serializes calls.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class TimerWheel<K, V> {
+
+    /** Slot width of each level as a power of two nanoseconds: ~1ms, 67ms, 4.3s, 4.6min, 4.9h. */
+    private static final int[] SHIFTS = {20, 26, 32, 38, 44};
+    private static final int SLOTS = 64;
+
+    /** Timer of one entry, linked into a slot while scheduled. */
+    static final class Node<K, V> {
+        final Entry<K, V> entry;
+        volatile long idleNanos; // expire-after-access period, 0 for expire-after-write
+        volatile boolean cancelled; // set when the entry is removed; dropped on its next visit
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(Entry<K, V> entry, long idleNanos) {
+            this.entry = entry;
+            this.idleNanos = idleNanos;
+        }
+    }
+
+    private final Node<K, V>[][] wheel;
+    private long time; // nanoTime of the last advance
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long now) {
+        this.time = now;
+        this.wheel = (Node<K, V>[][]) new Node<?, ?>[SHIFTS.length][SLOTS];
+        for (Node<K, V>[] level : wheel) {
+            for (int i = 0; i < SLOTS; i++) {
+                Node<K, V> sentinel = new Node<>(null, 0);
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                level[i] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * Links a timer into the slot of its deadline. Deadlines already passed
+     * go to the current slot and are handed out by the next advance.
+     *
+     * @param node     an unlinked timer
+     * @param deadline nanoTime at which the timer is due
+     */
+    void schedule(Node<K, V> node, long deadline) {
+        if (deadline - time < 0) {
+            deadline = time;
+        }
+        long duration = deadline - time;
+        int level = SHIFTS.length - 1;
+        for (int i = 0; i < SHIFTS.length - 1; i++) {
+            if (duration < 1L << SHIFTS[i + 1]) {
+                level = i;
+                break;
+            }
+        }
+        Node<K, V> sentinel = wheel[level][(int) ((deadline >>> SHIFTS[level]) & (SLOTS - 1))];
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    /**
+     * Moves the clock to {@code now}, emptying every slot it passed. Timers
+     * whose entry is due by then are handed to {@code expire}, which may
+     * schedule them again; cancelled timers are dropped; the others are
+     * rescheduled closer to their deadline.
+     *
+     * @param now    current nanoTime
+     * @param expire receives the due timers
+     */
+    void advance(long now, Consumer<Node<K, V>> expire) {
+        long previous = time;
+        time = now;
+        for (int i = 0; i < SHIFTS.length; i++) {
+            long previousTicks = previous >>> SHIFTS[i];
+            long currentTicks = now >>> SHIFTS[i];
+            if (i > 0 && currentTicks - previousTicks <= 0) {
+                break; // coarser levels tick even less often
+            }
+            long slots = Math.min(currentTicks - previousTicks, SLOTS - 1);
+            for (long t = previousTicks; t <= previousTicks + slots; t++) {
+                drain(wheel[i][(int) (t & (SLOTS - 1))], now, expire);
+            }
+        }
+    }
+
+    private void drain(Node<K, V> sentinel, long now, Consumer<Node<K, V>> expire) {
+        Node<K, V> node = sentinel.next;
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+        while (node != sentinel) {
+            Node<K, V> next = node.next;
+            node.prev = null;
+            node.next = null;
+            if (!node.cancelled) {
+                long deadline = node.entry.expiresAt;
+                if (deadline - now > 0) {
+                    schedule(node, deadline); // cascade, or pushed back by a read or rewrite
+                } else {
+                    expire.accept(node);
+                }
+            }
+            node = next;
+        }
+    }
+}
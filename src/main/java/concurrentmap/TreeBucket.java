@@ -1,36 +1,39 @@
 package concurrentmap;
 
 import java.util.List;
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Objects;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
 
 /**
  * TreeBucket provides a tree-based bucket implementation backed by a
- * {@link TreeMap}.
+ * balanced tree ordered by the cached hash of each key.
  * <p>
  * This structure improves performance for high-collision buckets by replacing
- * linear linked-list scans with logarithmic lookups. Thread safety is ensured
- * using a {@link ReentrantReadWriteLock}, allowing concurrent reads and
- * exclusive writes.
+ * linear linked-list scans with logarithmic lookups. Keys with equal hashes are
+ * ordered with {@link Comparable} when available and by class name otherwise,
+ * so any key type can be stored. Thread safety is ensured using a
+ * {@link ReentrantReadWriteLock}, allowing concurrent reads and exclusive writes.
  *
- * @param <K> type of key (must be {@link Comparable})
+ * @param <K> type of key
  * @param <V> type of value
  */
-public class TreeBucket<K extends Comparable<K>, V> implements BucketInterface<K, V> {
+public class TreeBucket<K, V> implements BucketInterface<K, V> {
 
-    /** Internal tree map for ordered key-value storage. */
-    private final TreeMap<K, V> tree;
+    /** Internal hash-ordered tree; entries keep their cached hash. */
+    private HashTree<K, V> tree;
 
     /** Read-write lock for concurrent access control. */
     private final ReentrantReadWriteLock rwLock;
 
+    /** Set once the entries have been migrated to a resized table. */
+    private ForwardingNode<K, V> forward;
+
     /**
      * Constructs an empty TreeBucket.
      */
     public TreeBucket() {
-        this.tree = new TreeMap<>();
+        this.tree = new HashTree<>();
         this.rwLock = new ReentrantReadWriteLock();
     }
 
@@ -38,52 +41,256 @@ public class TreeBucket<K extends Comparable<K>, V> implements BucketInterface<K
      * Inserts or updates a key-value pair.
      * Allows multiple readers but only one writer.
      *
+     * @param hash  the hash of the key
      * @param key   the key to insert or update
      * @param value the value to associate with the key
      * @return the previous value if key existed, otherwise null
      */
     @Override
-    public V put(K key, V value) {
+    public V put(int hash, K key, V value) {
+        ForwardingNode<K, V> fwd;
         rwLock.writeLock().lock();
         try {
-            return tree.put(key, value);
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> existing = tree.find(hash, key);
+                if (existing != null) {
+                    V oldValue = existing.value;
+                    existing.value = value;
+                    return oldValue;
+                }
+                tree.insert(new Entry<>(hash, key, value));
+                return null;
+            }
         } finally {
             rwLock.writeLock().unlock();
         }
+        return fwd.awaitTarget().getBucket(hash).put(hash, key, value);
     }
 
     /**
      * Retrieves a value by key.
      * Uses shared read lock to allow concurrent lookups.
      *
+     * @param hash the hash of the key
      * @param key the key to retrieve
      * @return the associated value, or null if not found
      */
     @Override
-    public V get(K key) {
+    public V get(int hash, K key) {
+        ForwardingNode<K, V> fwd;
         rwLock.readLock().lock();
         try {
-            return tree.get(key);
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> e = tree.find(hash, key);
+                return e == null ? null : e.access();
+            }
         } finally {
             rwLock.readLock().unlock();
         }
+        return fwd.awaitTarget().getBucket(hash).get(hash, key);
     }
 
     /**
      * Removes a key-value pair from the tree.
      * Requires exclusive write access.
      *
+     * @param hash the hash of the key
      * @param key the key to remove
      * @return the removed value, or null if not present
      */
     @Override
-    public V remove(K key) {
+    public V remove(int hash, K key) {
+        ForwardingNode<K, V> fwd;
         rwLock.writeLock().lock();
         try {
-            return tree.remove(key);
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> removed = tree.remove(hash, key);
+                return removed == null ? null : removed.value;
+            }
         } finally {
             rwLock.writeLock().unlock();
         }
+        return fwd.awaitTarget().getBucket(hash).remove(hash, key);
+    }
+
+    /**
+     * Computes a new value for the key under the write lock, inserting,
+     * updating or removing its entry according to the result.
+     *
+     * @param hash              the hash of the key
+     * @param key               the key to compute a value for
+     * @param remappingFunction computes the new value from the key and the current value
+     * @return the new value, or null if the key is now absent
+     */
+    @Override
+    public V compute(int hash, K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        ForwardingNode<K, V> fwd;
+        rwLock.writeLock().lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> existing = tree.find(hash, key);
+                V newValue = remappingFunction.apply(key, existing == null ? null : existing.value);
+                if (existing == null) {
+                    if (newValue != null) {
+                        tree.insert(new Entry<>(hash, key, newValue));
+                    }
+                } else if (newValue == null) {
+                    tree.remove(hash, key);
+                } else {
+                    existing.value = newValue;
+                }
+                return newValue;
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).compute(hash, key, remappingFunction);
+    }
+
+    /**
+     * Inserts the entry under the write lock unless the key is present.
+     *
+     * @param hash  the hash of the key
+     * @param key   the key to insert
+     * @param value the value to associate with an absent key
+     * @return the current value, or null if the entry was added
+     */
+    @Override
+    public V putIfAbsent(int hash, K key, V value) {
+        ForwardingNode<K, V> fwd;
+        rwLock.writeLock().lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> existing = tree.find(hash, key);
+                if (existing != null) {
+                    return existing.value;
+                }
+                tree.insert(new Entry<>(hash, key, value));
+                return null;
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).putIfAbsent(hash, key, value);
+    }
+
+    /**
+     * Replaces the value under the write lock if it equals the expected one.
+     *
+     * @param hash          the hash of the key
+     * @param key           the key to update
+     * @param expectedValue the value the key must currently have
+     * @param newValue      the value to store
+     * @return true if the value was replaced
+     */
+    @Override
+    public boolean replace(int hash, K key, V expectedValue, V newValue) {
+        ForwardingNode<K, V> fwd;
+        rwLock.writeLock().lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> existing = tree.find(hash, key);
+                if (existing == null || !Objects.equals(existing.value, expectedValue)) {
+                    return false;
+                }
+                existing.value = newValue;
+                return true;
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).replace(hash, key, expectedValue, newValue);
+    }
+
+    /**
+     * Removes the entry under the write lock if its value equals the expected one.
+     *
+     * @param hash          the hash of the key
+     * @param key           the key to remove
+     * @param expectedValue the value the key must currently have
+     * @return true if the entry was removed
+     */
+    @Override
+    public boolean remove(int hash, K key, V expectedValue) {
+        ForwardingNode<K, V> fwd;
+        rwLock.writeLock().lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                Entry<K, V> existing = tree.find(hash, key);
+                if (existing == null || !Objects.equals(existing.value, expectedValue)) {
+                    return false;
+                }
+                tree.remove(hash, key);
+                return true;
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+        return fwd.awaitTarget().getBucket(hash).remove(hash, key, expectedValue);
+    }
+
+    /**
+     * Inserts or updates a batch of entries under a single acquisition of
+     * the write lock. Absent keys are inserted using the batch entries.
+     *
+     * @param batch entries of this bucket
+     * @return the number of keys added
+     */
+    @Override
+    public int putAll(List<Entry<K, V>> batch) {
+        ForwardingNode<K, V> fwd;
+        rwLock.writeLock().lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                int added = 0;
+                for (Entry<K, V> e : batch) {
+                    Entry<K, V> existing = tree.find(e.hash, e.key);
+                    if (existing != null) {
+                        existing.value = e.value;
+                    } else {
+                        e.next = null;
+                        tree.insert(e);
+                        added++;
+                    }
+                }
+                return added;
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+        return fwd.awaitTarget().putBatch(batch);
+    }
+
+    /**
+     * Looks up a batch of keys under a single acquisition of the read lock.
+     *
+     * @param batch entries of this bucket whose values are replaced by the results
+     */
+    @Override
+    public void getAll(List<Entry<K, V>> batch) {
+        ForwardingNode<K, V> fwd;
+        rwLock.readLock().lock();
+        try {
+            fwd = forward;
+            if (fwd == null) {
+                for (Entry<K, V> e : batch) {
+                    Entry<K, V> found = tree.find(e.hash, e.key);
+                    e.value = found == null ? null : found.access();
+                }
+                return;
+            }
+        } finally {
+            rwLock.readLock().unlock();
+        }
+        fwd.awaitTarget().getBatch(batch);
     }
 
     /**
@@ -112,11 +319,7 @@ public class TreeBucket<K extends Comparable<K>, V> implements BucketInterface<K
     public List<Entry<K, V>> getEntries() {
         rwLock.readLock().lock();
         try {
-            List<Entry<K, V>> entries = new ArrayList<>();
-            for (Map.Entry<K, V> e : tree.entrySet()) {
-                entries.add(new Entry<>(e.getKey(), e.getValue()));
-            }
-            return entries;
+            return tree.entries();
         } finally {
             rwLock.readLock().unlock();
         }
@@ -132,4 +335,30 @@ public class TreeBucket<K extends Comparable<K>, V> implements BucketInterface<K
         return size();
     }
 
+    /**
+     * Seals this bucket under the write lock and copies its entries into
+     * the target table once the lock is released.
+     *
+     * @param target the table receiving the entries
+     */
+    @Override
+    public void transferTo(ConcurrentCustomMap<K, V> target) {
+        ForwardingNode<K, V> fwd = new ForwardingNode<>(target);
+        List<Entry<K, V>> moved;
+        rwLock.writeLock().lock();
+        try {
+            if (forward != null) {
+                return; // already migrated
+            }
+            moved = tree.entries();
+            tree = new HashTree<>();
+            forward = fwd;
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+        for (Entry<K, V> e : moved) {
+            target.getBucket(e.hash).put(e.hash, e.key, e.value);
+        }
+        fwd.complete();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,398 @@
+package concurrentmap;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of opaque records with group commit.
+ * <p>
+ * Writers never take a lock: {@link #append} puts the record on a lock-free
+ * queue and returns a future. A single flusher thread drains everything
+ * queued since its last pass, writes it with one call and makes it durable
+ * with one {@code fsync}, then completes the futures of the whole batch. The
+ * more writers arrive while an {@code fsync} is running, the larger the next
+ * batch, so the cost of a sync is shared instead of paid by every writer.
+ * <p>
+ * Records are written in the order they were queued. Each is framed as
+ * {@code [length][crc32][payload]}; when the log is reopened, records are
+ * replayed up to the first incomplete or corrupt one, which is where a crash
+ * interrupted the last write, and the file is truncated there. A failed
+ * write or sync can leave such a torn frame in the middle of the file, so
+ * after the first I/O error the log fails every later record instead of
+ * writing it where recovery would never reach it.
+ * <p>
+ * Logs are opened with {@link #open}, which replays the file and then starts
+ * the flusher.
+ * <p>
+ * Per-commit batch sizes and fsync latencies are exposed as metrics.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    static final long MAGIC = 0x434D57414C303031L; // "CMWAL001"
+    static final int HEADER_BYTES = 8;
+    static final int FRAME_BYTES = 8;
+
+    /** Bytes after which the flusher stops gathering and commits the batch. */
+    static final int MAX_BATCH_BYTES = 1 << 20;
+
+    /** A queued record and the future completed once it is durable. */
+    private static final class Pending {
+        final byte[] payload;
+        final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        Pending(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+
+    final FileChannel channel; // package-private so tests can make writes fail
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final Thread flusher;
+    private volatile boolean idle; // flusher parked or about to park
+    private volatile boolean closed;
+    private volatile Exception failure; // first write or sync error, after which every record fails
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(64 * 1024); // flusher only
+
+    // metrics, written by the flusher only
+    private volatile long commits;
+    private volatile long records;
+    private volatile int lastBatchSize;
+    private volatile int maxBatchSize;
+    private volatile long lastSyncNanos;
+    private volatile long maxSyncNanos;
+    private volatile long totalSyncNanos;
+
+    /**
+     * Opens or creates a log without replaying it.
+     *
+     * @param file log file
+     * @return the open log
+     * @throws IOException if the file cannot be opened or is not a log
+     */
+    public static WriteAheadLog open(Path file) throws IOException {
+        return open(file, payload -> { });
+    }
+
+    /**
+     * Opens or creates a log, first handing every intact record to
+     * {@code replay} in the order it was appended.
+     *
+     * @param file   log file
+     * @param replay receives the payload of each recovered record
+     * @return the open log
+     * @throws IOException if the file cannot be opened or is not a log
+     */
+    public static WriteAheadLog open(Path file, Consumer<byte[]> replay) throws IOException {
+        WriteAheadLog log = new WriteAheadLog(file, replay);
+        log.flusher.start();
+        return log;
+    }
+
+    private WriteAheadLog(Path file, Consumer<byte[]> replay) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long end = recover(replay);
+            channel.truncate(end);
+            channel.position(end);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+    }
+
+    /**
+     * Writes the header of a new log, or replays an existing one.
+     *
+     * @return length of the intact prefix of the file
+     */
+    private long recover(Consumer<byte[]> replay) throws IOException {
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putLong(MAGIC).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+            return HEADER_BYTES;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(0)), 64 * 1024));
+        long size = channel.size();
+        if (size < HEADER_BYTES || in.readLong() != MAGIC) {
+            throw new IOException("Not a write-ahead log");
+        }
+        long end = HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        while (end + FRAME_BYTES <= size) {
+            int length;
+            int checksum;
+            byte[] payload;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length < 0 || length > size - end - FRAME_BYTES) {
+                    break; // torn or garbage frame
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+            } catch (EOFException e) {
+                break;
+            }
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            replay.accept(payload);
+            end += FRAME_BYTES + length;
+        }
+        return end;
+    }
+
+    /**
+     * Queues a record. The record is durable once the returned future
+     * completes; it completes exceptionally if the write or sync fails, or
+     * if an earlier one failed.
+     *
+     * @param payload record contents, not modified afterwards
+     * @return future completed when the record is on disk
+     * @throws IllegalStateException if the log is closed
+     */
+    public CompletableFuture<Void> append(byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("Log is closed");
+        }
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failed());
+        }
+        Pending p = new Pending(payload);
+        queue.offer(p);
+        if (closed && queue.remove(p)) {
+            // close() may have drained the queue before the offer; otherwise it or the flusher owns p
+            p.durable.completeExceptionally(new IllegalStateException("Log is closed"));
+        } else if (idle) {
+            LockSupport.unpark(flusher);
+        }
+        return p.durable;
+    }
+
+    /**
+     * Returns the error failing records after the log was poisoned.
+     */
+    private IOException failed() {
+        return new IOException("Log failed by an earlier write", failure);
+    }
+
+    /**
+     * Waits until the record behind the given future is durable.
+     *
+     * @param commit future returned by {@link #append}
+     * @throws UncheckedIOException if the record could not be written
+     */
+    public static void await(CompletableFuture<Void> commit) {
+        try {
+            commit.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw new UncheckedIOException(io);
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queues a record and waits until it is durable.
+     *
+     * @param payload record contents
+     */
+    public void appendAndWait(byte[] payload) {
+        await(append(payload));
+    }
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            Pending p = queue.poll();
+            if (p == null) {
+                if (closed) {
+                    return;
+                }
+                idle = true;
+                // re-check after publishing idle, so an append racing with it unparks us
+                if (queue.isEmpty() && !closed) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                continue;
+            }
+            int bytes = 0;
+            do {
+                batch.add(p);
+                bytes += FRAME_BYTES + p.payload.length;
+            } while (bytes < MAX_BATCH_BYTES && (p = queue.poll()) != null);
+            commit(batch, bytes);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes and syncs one batch, then releases its writers. The first
+     * failure poisons the log, since the file may now end in a torn frame
+     * that recovery would stop at.
+     */
+    private void commit(List<Pending> batch, int bytes) {
+        if (failure != null) {
+            IOException e = failed();
+            for (Pending p : batch) {
+                p.durable.completeExceptionally(e);
+            }
+            return;
+        }
+        try {
+            if (writeBuffer.capacity() < bytes) {
+                writeBuffer = ByteBuffer.allocate(Math.max(bytes, writeBuffer.capacity() * 2));
+            }
+            ByteBuffer buf = writeBuffer.clear();
+            CRC32 crc = new CRC32();
+            for (Pending p : batch) {
+                crc.reset();
+                crc.update(p.payload);
+                buf.putInt(p.payload.length).putInt((int) crc.getValue()).put(p.payload);
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            long start = System.nanoTime();
+            channel.force(false);
+            long elapsed = System.nanoTime() - start;
+
+            commits++;
+            records += batch.size();
+            lastBatchSize = batch.size();
+            maxBatchSize = Math.max(maxBatchSize, batch.size());
+            lastSyncNanos = elapsed;
+            maxSyncNanos = Math.max(maxSyncNanos, elapsed);
+            totalSyncNanos += elapsed;
+            for (Pending p : batch) {
+                p.durable.complete(null);
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            for (Pending p : batch) {
+                p.durable.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of group commits, one {@code fsync} each.
+     */
+    public long getCommitCount() {
+        return commits;
+    }
+
+    /**
+     * Returns the number of records made durable.
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Returns the number of records in the most recent commit.
+     */
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    /**
+     * Returns the largest number of records made durable by one commit.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Returns the mean number of records per commit.
+     */
+    public double getAverageBatchSize() {
+        long c = commits;
+        return c == 0 ? 0 : (double) records / c;
+    }
+
+    /**
+     * Returns the duration of the most recent {@code fsync}, in nanoseconds.
+     */
+    public long getLastSyncNanos() {
+        return lastSyncNanos;
+    }
+
+    /**
+     * Returns the longest {@code fsync}, in nanoseconds.
+     */
+    public long getMaxSyncNanos() {
+        return maxSyncNanos;
+    }
+
+    /**
+     * Returns the mean {@code fsync} duration, in nanoseconds.
+     */
+    public double getAverageSyncNanos() {
+        long c = commits;
+        return c == 0 ? 0 : (double) totalSyncNanos / c;
+    }
+
+    /**
+     * Commits every queued record, stops the flusher and closes the file.
+     * Later appends throw {@link IllegalStateException}; a record that raced
+     * with closing is failed rather than left waiting.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(flusher);
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        Pending p;
+        while ((p = queue.poll()) != null) {
+            p.durable.completeExceptionally(new IllegalStateException("Log is closed"));
+        }
+        channel.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
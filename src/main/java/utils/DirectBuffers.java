@@ -0,0 +1,51 @@
+package utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Utility class for releasing the native memory behind direct and mapped
+ * byte buffers without waiting for the garbage collector.
+ */
+public final class DirectBuffers {
+    // Private constructor to prevent instantiation
+    private DirectBuffers() {}
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // not available: buffers are released when they become unreachable
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * Releases the native memory of a direct or mapped buffer right away.
+     * The buffer must not be used afterwards. If the JDK does not expose a
+     * cleaner, the memory is released once the buffer is garbage collected.
+     *
+     * @param buffer a direct buffer that is no longer referenced, or null
+     */
+    public static void free(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // slices and duplicates cannot be cleaned; leave them to the GC
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package utils;
+
+import java.security.SecureRandom;
+
+/**
+ * Strategy for turning a key into the hash used to place it in a bucket.
+ * <p>
+ * Implementations must be deterministic for the lifetime of a map and must
+ * never return a negative value, so the hash can be reduced to a bucket index
+ * with either a mask or a modulo.
+ */
+@FunctionalInterface
+public interface HashStrategy {
+
+    /**
+     * Computes the non-negative hash of the given key.
+     *
+     * @param key the key, possibly null
+     * @return the hash (always >= 0)
+     */
+    int hash(Object key);
+
+    /**
+     * Uses {@code hashCode()} as is, only clearing the sign bit.
+     * Cheapest, but keys differing only in their high bits collide.
+     */
+    HashStrategy IDENTITY = key -> key == null ? 0 : key.hashCode() & 0x7fffffff;
+
+    /**
+     * XORs the high half of {@code hashCode()} into the low half,
+     * as ConcurrentHashMap does, so masking still sees the high bits.
+     */
+    HashStrategy SPREAD = key -> {
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & 0x7fffffff;
+    };
+
+    /**
+     * Applies the Murmur3 32-bit finalizer, so every input bit affects
+     * every output bit. Best distribution, a few more instructions.
+     */
+    HashStrategy MURMUR3 = key -> key == null ? 0 : HashUtils.fmix32(key.hashCode()) & 0x7fffffff;
+
+    /**
+     * Returns a Murmur3-based strategy mixed with the given seed.
+     * Maps built with different seeds place the same keys differently.
+     *
+     * @param seed the seed to mix in
+     * @return a seeded strategy
+     */
+    static HashStrategy seeded(int seed) {
+        return key -> key == null ? 0 : HashUtils.fmix32(key.hashCode() ^ seed) & 0x7fffffff;
+    }
+
+    /**
+     * Returns a seeded strategy with a seed drawn from {@link SecureRandom}.
+     * <p>
+     * An attacker who cannot learn the seed cannot craft keys that land in the
+     * same bucket. Keys with identical {@code hashCode()} still collide; those
+     * are handled by tree buckets, not by the hash function.
+     *
+     * @return a randomized strategy
+     */
+    static HashStrategy randomized() {
+        return seeded(new SecureRandom().nextInt());
+    }
+}
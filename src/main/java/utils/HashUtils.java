@@ -16,13 +16,77 @@ public final class HashUtils {
      * @return the computed bucket index (0 <= index < numBuckets)
      */
     public static int getBucketIndex(Object key, int numBuckets) {
-        if(key == null) {
-            return 0; //null keys always map to bucket 0
+        return indexFor(hash(key), numBuckets);
+    }
+
+    /**
+     * Computes the hash stored in each entry for the given key, using the
+     * default {@link HashStrategy#SPREAD} strategy.
+     * The result is never negative, so it can be reused to find the
+     * bucket in a table of any size without calling hashCode() again.
+     *
+     * @param key the key whose hash is to be computed
+     * @return the non-negative hash of the key
+     */
+    public static int hash(Object key) {
+        return HashStrategy.SPREAD.hash(key);
+    }
+
+    /**
+     * Maps a non-negative hash to a bucket index.
+     * Uses a mask when the bucket count is a power of two and falls back
+     * to a modulo otherwise.
+     *
+     * @param hash       non-negative hash of the key
+     * @param numBuckets total number of buckets in the hash map
+     * @return the computed bucket index (0 <= index < numBuckets)
+     */
+    public static int indexFor(int hash, int numBuckets) {
+        if (isPowerOfTwo(numBuckets)) {
+            return hash & (numBuckets - 1);
         }
-        int hash = key.hashCode();
-        
-        // Handle negative hash codes by masking off the sign bit
-        int positiveHash = hash & 0x7fffffff;
-        return positiveHash % numBuckets;
+        return hash % numBuckets;
+    }
+
+    /**
+     * Returns true if the given count is a positive power of two.
+     *
+     * @param n the count to test
+     * @return true if {@code n} is 1, 2, 4, 8, ...
+     */
+    public static boolean isPowerOfTwo(int n) {
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+
+    /**
+     * Murmur3 32-bit finalization mix: forces all bits of the input to
+     * avalanche into every bit of the result.
+     *
+     * @param h the value to mix
+     * @return the mixed value
+     */
+    public static int fmix32(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Murmur3 64-bit finalization mix, the {@code long} counterpart of
+     * {@link #fmix32(int)}.
+     *
+     * @param k the value to mix
+     * @return the mixed value
+     */
+    public static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
     }
 }
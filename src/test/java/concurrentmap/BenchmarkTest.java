@@ -1,6 +1,8 @@
 package concurrentmap;
 
 import org.junit.jupiter.api.Test;
+import utils.HashStrategy;
+import utils.HashUtils;
 
 import java.util.*;
 import java.util.concurrent.*;
@@ -9,15 +11,35 @@ import java.util.function.Supplier;
 
 /**
  * Benchmark performance of different concurrent map implementations:
- * - ConcurrentCustomMap with Bucket, LockFreeBucket, TreeBucket
+ * - ConcurrentCustomMap with Bucket, LockFreeBucket, TreeBucket, AdaptiveBucket
  * - ResizableConcurrentMap (optional)
  * - Standard Java ConcurrentHashMap and SynchronizedMap
+ * - BoundedCache hit rate and eviction throughput on a Zipf trace
+ * - CLOCK against W-TinyLFU admission on Zipf and scan-mixed traces
  */
 public class BenchmarkTest {
 
     private static final int THREAD_COUNT = 8;
     private static final int OPERATIONS_PER_THREAD = 100_000;
     private static final double READ_RATIO = 0.8; // 80% reads
+    private static final int HASH_KEYS = 100_000;
+    private static final int HASH_BUCKETS = 1024;
+
+    private static final int[] SCALING_THREADS = {1, 8, 32, 64};
+    private static final int SCALING_TOTAL_OPS = 640_000;
+    private static final int SCALING_BUCKETS = 16_384;
+    private static final double SCALING_READ_RATIO = 0.9; // 90% reads
+
+    private static final int BULK_ENTRIES = 1_000_000;
+    private static final int BULK_BUCKETS = 1 << 18;
+
+    private static final int CACHE_KEYS = 100_000;
+    private static final int CACHE_SIZE = 10_000;
+    private static final int CACHE_OPS_PER_THREAD = 200_000;
+    private static final double ZIPF_SKEW = 0.99;
+
+    // Keeps the JIT from discarding benchmark loops whose result is unused
+    private static volatile int blackhole;
 
     // Helper class to hold benchmark results
     private static class BenchmarkResult {
@@ -44,6 +66,14 @@ public class BenchmarkTest {
         benchmarkCustom("Bucket", Bucket::new);
         benchmarkCustom("LockFreeBucket", LockFreeBucket::new);
         benchmarkCustom("TreeBucket", TreeBucket::new);
+        benchmarkCustom("AdaptiveBucket", AdaptiveBucket::new);
+        benchmarkCustom("StripedBucket", new StripedLocks()::newBucket);
+
+        // Open-addressing engine
+        benchmarkOpenAddressing("OpenAddressingMap");
+
+        // Primitive engine, no boxing
+        benchmarkIntIntMap("IntIntMap");
 
         // Optional: Resizable map
         benchmarkResizable("ResizableConcurrentMap (Bucket)", Bucket::new);
@@ -53,6 +83,240 @@ public class BenchmarkTest {
         benchmarkStandard("SynchronizedMap", Collections.synchronizedMap(new HashMap<Integer, Integer>()));
     }
 
+    @Test
+    void runHashStrategyBenchmark() {
+        System.out.println("===== HASH STRATEGY BENCHMARK =====");
+        System.out.printf("Keys: %,d | Buckets: %,d%n%n", HASH_KEYS, HASH_BUCKETS);
+
+        Map<String, HashStrategy> strategies = new LinkedHashMap<>();
+        strategies.put("IDENTITY", HashStrategy.IDENTITY);
+        strategies.put("SPREAD", HashStrategy.SPREAD);
+        strategies.put("MURMUR3", HashStrategy.MURMUR3);
+        strategies.put("SEEDED", HashStrategy.randomized());
+
+        // Sequential ints, ints with all entropy in the high bits, and strings
+        Map<String, Object[]> keySets = new LinkedHashMap<>();
+        Object[] sequential = new Object[HASH_KEYS];
+        Object[] highBits = new Object[HASH_KEYS];
+        Object[] strings = new Object[HASH_KEYS];
+        for (int i = 0; i < HASH_KEYS; i++) {
+            sequential[i] = i;
+            highBits[i] = i << 16;
+            strings[i] = "key-" + i;
+        }
+        keySets.put("sequential ints", sequential);
+        keySets.put("high-bit ints", highBits);
+        keySets.put("strings", strings);
+
+        for (Map.Entry<String, HashStrategy> strategy : strategies.entrySet()) {
+            System.out.printf("    %s%n", strategy.getKey());
+            for (Map.Entry<String, Object[]> keys : keySets.entrySet()) {
+                benchmarkHashStrategy(keys.getKey(), keys.getValue(), strategy.getValue());
+            }
+            System.out.println("----------------------------------------------------\n");
+        }
+    }
+
+    @Test
+    void runReadHeavyScalingBenchmark() throws InterruptedException {
+        System.out.println("===== READ-HEAVY LOCK SCALING BENCHMARK =====");
+        System.out.printf("Buckets: %,d | Total ops: %,d | Read Ratio: %.0f%%%n%n",
+                SCALING_BUCKETS, SCALING_TOTAL_OPS, SCALING_READ_RATIO * 100);
+
+        Map<String, Supplier<? extends BucketInterface<Integer, Integer>>> buckets = new LinkedHashMap<>();
+        buckets.put("Bucket (ReentrantLock)", Bucket::new);
+        buckets.put("StampedBucket (optimistic)", StampedBucket::new);
+        buckets.put("TreeBucket (ReadWriteLock)", TreeBucket::new);
+
+        for (Map.Entry<String, Supplier<? extends BucketInterface<Integer, Integer>>> bucket : buckets.entrySet()) {
+            System.out.printf("    %s%n", bucket.getKey());
+            for (int threads : SCALING_THREADS) {
+                ConcurrentCustomMap<Integer, Integer> map = new ConcurrentCustomMap<>(SCALING_BUCKETS, bucket.getValue());
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    map.put(i, i);
+                }
+                BenchmarkResult result = runBenchmark(map, threads, SCALING_TOTAL_OPS / threads, SCALING_READ_RATIO);
+                System.out.printf("   • %2d threads:  %, 14.2f ops/sec | %, 10.2f ns/op%n",
+                        threads, result.opsPerSec, result.avgLatency);
+            }
+            System.out.println("----------------------------------------------------\n");
+        }
+    }
+
+    @Test
+    void runParallelBulkBenchmark() throws Exception {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        System.out.println("===== PARALLEL BULK OPERATION BENCHMARK =====");
+        System.out.printf("Entries: %,d | Buckets: %,d | CPUs: %d%n%n", BULK_ENTRIES, BULK_BUCKETS, cpus);
+
+        ConcurrentCustomMap<Integer, Integer> map = new ConcurrentCustomMap<>(BULK_BUCKETS, LockFreeBucket::new);
+        for (int i = 0; i < BULK_ENTRIES; i++) {
+            map.put(i, i);
+        }
+        List<Integer> levels = new ArrayList<>();
+        for (int p = 1; p < cpus; p <<= 1) {
+            levels.add(p);
+        }
+        levels.add(cpus);
+
+        // Streams started inside a pool run on that pool, so its size sets the parallelism
+        for (int parallelism : levels) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                long threshold = parallelism == 1 ? Long.MAX_VALUE : 1;
+                pool.submit(() -> map.reduce(threshold, (k, v) -> (long) v, Long::sum)).get(); // warm-up
+                int rounds = 10;
+                long start = System.nanoTime();
+                long sink = 0;
+                for (int r = 0; r < rounds; r++) {
+                    sink += pool.submit(() -> map.reduce(threshold, (k, v) -> (long) v, Long::sum)).get();
+                }
+                long elapsed = (System.nanoTime() - start) / rounds;
+                blackhole = (int) sink;
+                System.out.printf("   • reduce, %2d threads:  %, 10.2f ms | %, 14.2f entries/sec%n",
+                        parallelism, elapsed / 1e6, BULK_ENTRIES * 1e9 / elapsed);
+            } finally {
+                pool.shutdown();
+            }
+        }
+        System.out.println("----------------------------------------------------\n");
+    }
+
+    @Test
+    void runBoundedCacheBenchmark() throws InterruptedException {
+        System.out.println("===== BOUNDED CACHE BENCHMARK =====");
+        System.out.printf("Threads: %d | Keys: %,d | Cache size: %,d | Zipf skew: %.2f | Ops/thread: %,d%n%n",
+                THREAD_COUNT, CACHE_KEYS, CACHE_SIZE, ZIPF_SKEW, CACHE_OPS_PER_THREAD);
+
+        int[][] traces = new int[THREAD_COUNT][];
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            traces[t] = zipfTrace(CACHE_KEYS, ZIPF_SKEW, CACHE_OPS_PER_THREAD, t);
+        }
+
+        // Raw map for reference: grows to every key, so every read after the first hits
+        ConcurrentCustomMap<Integer, Integer> raw = new ConcurrentCustomMap<>(CACHE_SIZE, Bucket::new);
+        long rawNs = runReadThrough(raw, traces);
+        System.out.printf("    ConcurrentCustomMap (unbounded)%n");
+        System.out.printf("   • Ops/sec:        %, .2f | entries: %,d%n%n",
+                THREAD_COUNT * (double) CACHE_OPS_PER_THREAD * 1e9 / rawNs, raw.size());
+
+        Map<String, Supplier<? extends BucketInterface<Integer, Integer>>> buckets = new LinkedHashMap<>();
+        buckets.put("BoundedCache (CLOCK, Bucket)", Bucket::new);
+        buckets.put("BoundedCache (CLOCK, LockFreeBucket)", LockFreeBucket::new);
+        for (Map.Entry<String, Supplier<? extends BucketInterface<Integer, Integer>>> bucket : buckets.entrySet()) {
+            BoundedCache<Integer, Integer> cache = new BoundedCache<>(CACHE_SIZE, bucket.getValue());
+            long elapsed = runReadThrough(cache, traces);
+            System.out.printf("    %s%n", bucket.getKey());
+            System.out.printf("   • Hit rate:       %.2f%%%n", cache.getHitRate() * 100);
+            System.out.printf("   • Ops/sec:        %, .2f%n", THREAD_COUNT * (double) CACHE_OPS_PER_THREAD * 1e9 / elapsed);
+            System.out.printf("   • Evictions/sec:  %, .2f (%,d total)%n%n",
+                    cache.getEvictionCount() * 1e9 / elapsed, cache.getEvictionCount());
+        }
+        System.out.println("----------------------------------------------------\n");
+    }
+
+    @Test
+    void runCacheAdmissionBenchmark() throws InterruptedException {
+        System.out.println("===== CACHE ADMISSION BENCHMARK =====");
+        System.out.printf("Threads: %d | Keys: %,d | Cache size: %,d | Zipf skew: %.2f | Ops/thread: %,d%n%n",
+                THREAD_COUNT, CACHE_KEYS, CACHE_SIZE, ZIPF_SKEW, CACHE_OPS_PER_THREAD);
+
+        int[][] zipf = new int[THREAD_COUNT][];
+        int[][] scanMixed = new int[THREAD_COUNT][];
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            zipf[t] = zipfTrace(CACHE_KEYS, ZIPF_SKEW, CACHE_OPS_PER_THREAD, t);
+            // every other block of 1,000 operations is a scan over keys never seen before
+            scanMixed[t] = zipf[t].clone();
+            int scanKey = CACHE_KEYS + t * CACHE_OPS_PER_THREAD;
+            for (int i = 0; i < CACHE_OPS_PER_THREAD; i++) {
+                if ((i / 1000) % 2 == 1) {
+                    scanMixed[t][i] = scanKey++;
+                }
+            }
+        }
+
+        Map<String, int[][]> traces = new LinkedHashMap<>();
+        traces.put("Zipf", zipf);
+        traces.put("Zipf + scans", scanMixed);
+        for (Map.Entry<String, int[][]> trace : traces.entrySet()) {
+            System.out.printf("    %s%n", trace.getKey());
+            for (BoundedCache.Policy policy : BoundedCache.Policy.values()) {
+                BoundedCache<Integer, Integer> cache = new BoundedCache<>(CACHE_SIZE, Bucket::new, policy);
+                long elapsed = runReadThrough(cache, trace.getValue());
+                System.out.printf("   • %-10s hit rate: %6.2f%% | %, 14.2f ops/sec%n", policy,
+                        cache.getHitRate() * 100, THREAD_COUNT * (double) CACHE_OPS_PER_THREAD * 1e9 / elapsed);
+            }
+            System.out.println();
+        }
+        System.out.println("----------------------------------------------------\n");
+    }
+
+    // Replays one key trace per thread as read-through traffic: get, and put on a miss
+    private long runReadThrough(MapInterface<Integer, Integer> map, int[][] traces) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(traces.length);
+        long start = System.nanoTime();
+        for (int[] trace : traces) {
+            pool.submit(() -> {
+                for (int key : trace) {
+                    if (map.get(key) == null) {
+                        map.put(key, key);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(2, TimeUnit.MINUTES);
+        return System.nanoTime() - start;
+    }
+
+    // Keys 0..keys-1 drawn with probability proportional to 1 / (rank + 1)^skew
+    private static int[] zipfTrace(int keys, double skew, int length, long seed) {
+        double[] cdf = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        Random random = new Random(seed);
+        int[] trace = new int[length];
+        for (int i = 0; i < length; i++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            trace[i] = rank >= 0 ? rank : Math.min(-rank - 1, keys - 1);
+        }
+        return trace;
+    }
+
+    // Measure bucket distribution and hash+index throughput of one strategy
+    private void benchmarkHashStrategy(String keyName, Object[] keys, HashStrategy strategy) {
+        int[] loads = new int[HASH_BUCKETS];
+        for (Object key : keys) {
+            loads[HashUtils.indexFor(strategy.hash(key), HASH_BUCKETS)]++;
+        }
+        double mean = (double) keys.length / HASH_BUCKETS;
+        double variance = 0;
+        int max = 0;
+        for (int load : loads) {
+            variance += (load - mean) * (load - mean);
+            max = Math.max(max, load);
+        }
+        double stdDev = Math.sqrt(variance / HASH_BUCKETS);
+
+        int rounds = 20;
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (Object key : keys) {
+                sink += HashUtils.indexFor(strategy.hash(key), HASH_BUCKETS);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        double nsPerOp = elapsed / (double) (rounds * keys.length);
+        blackhole = sink;
+
+        System.out.printf("   • %-16s max load: %,6d | std dev: %,10.2f | %6.2f ns/op%n",
+                keyName, max, stdDev, nsPerOp);
+    }
+
     // Benchmark ConcurrentCustomMap with a given bucket type
     private void benchmarkCustom(String name, Supplier<? extends BucketInterface<Integer, Integer>> supplier)
             throws InterruptedException {
@@ -95,29 +359,88 @@ public class BenchmarkTest {
         } catch (Exception ignored) {}
     }
 
-    // Benchmark for standard maps
-    private void benchmarkStandard(String name, Map<Integer, Integer> map) throws InterruptedException {
+    // Benchmark OpenAddressingMap, starting as small as the bucket variants
+    private void benchmarkOpenAddressing(String name) throws InterruptedException {
         System.gc();
         Thread.sleep(50);
         long memBefore = usedMemory();
 
+        OpenAddressingMap<Integer, Integer> map = new OpenAddressingMap<>(16);
         BenchmarkResult result = runBenchmark(map);
         long memAfter = usedMemory();
 
         printResults(name, result, memAfter - memBefore);
     }
 
-    // Benchmark logic for ConcurrentCustomMap
-    private BenchmarkResult runBenchmark(ConcurrentCustomMap<Integer, Integer> map) throws InterruptedException {
+    // Benchmark IntIntMap with the same workload, without boxing keys or values
+    private void benchmarkIntIntMap(String name) throws InterruptedException {
+        System.gc();
+        Thread.sleep(50);
+        long memBefore = usedMemory();
+
+        IntIntMap map = new IntIntMap(16);
         ExecutorService pool = Executors.newFixedThreadPool(THREAD_COUNT);
         AtomicLong ops = new AtomicLong();
         long start = System.nanoTime();
 
         for (int t = 0; t < THREAD_COUNT; t++) {
             pool.submit(() -> {
+                int sink = 0;
                 for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
                     int key = ThreadLocalRandom.current().nextInt(OPERATIONS_PER_THREAD);
                     if (ThreadLocalRandom.current().nextDouble() < READ_RATIO) {
+                        sink += map.get(key);
+                    } else {
+                        map.put(key, key);
+                        if (key % 1000 == 0)
+                            map.remove(key);
+                    }
+                    ops.incrementAndGet();
+                }
+                blackhole = sink;
+            });
+        }
+
+        pool.shutdown();
+        pool.awaitTermination(2, TimeUnit.MINUTES);
+
+        long elapsed = System.nanoTime() - start;
+        long memAfter = usedMemory();
+        BenchmarkResult result = new BenchmarkResult(ops.get(), elapsed,
+                ops.get() / (elapsed / 1_000_000_000.0), elapsed / (double) ops.get());
+
+        printResults(name, result, memAfter - memBefore);
+    }
+
+    // Benchmark for standard maps
+    private void benchmarkStandard(String name, Map<Integer, Integer> map) throws InterruptedException {
+        System.gc();
+        Thread.sleep(50);
+        long memBefore = usedMemory();
+
+        BenchmarkResult result = runBenchmark(map);
+        long memAfter = usedMemory();
+
+        printResults(name, result, memAfter - memBefore);
+    }
+
+    // Benchmark logic for the map engines
+    private BenchmarkResult runBenchmark(MapInterface<Integer, Integer> map) throws InterruptedException {
+        return runBenchmark(map, THREAD_COUNT, OPERATIONS_PER_THREAD, READ_RATIO);
+    }
+
+    // Benchmark logic for the map engines with a custom thread count and mix
+    private BenchmarkResult runBenchmark(MapInterface<Integer, Integer> map, int threads,
+                                         int operationsPerThread, double readRatio) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicLong ops = new AtomicLong();
+        long start = System.nanoTime();
+
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < operationsPerThread; i++) {
+                    int key = ThreadLocalRandom.current().nextInt(OPERATIONS_PER_THREAD);
+                    if (ThreadLocalRandom.current().nextDouble() < readRatio) {
                         map.get(key);
                     } else {
                         map.put(key, key);
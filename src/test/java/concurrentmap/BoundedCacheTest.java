@@ -0,0 +1,149 @@
+package concurrentmap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Unit tests for BoundedCache
+ * - The maximum size holds for every bucket type
+ * - Entries read since the last sweep survive eviction
+ * - Hit, miss and eviction counters
+ * - Concurrent writers never leave the cache over its bound
+ * - getOrLoad caches loaded values within the bound
+ * - W-TinyLFU keeps frequently read keys through a scan, and its sketch counts and ages
+ */
+class BoundedCacheTest {
+
+    @Test
+    void sizeNeverExceedsMaximum() {
+        for (BoundedCache.Policy policy : BoundedCache.Policy.values())
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : BucketSuppliers.<Integer,Integer>allBuckets()) {
+            BoundedCache<Integer,Integer> cache = new BoundedCache<>(100, supplier, policy);
+            for(int i=0;i<1000;i++) {
+                assertNull(cache.put(i, i));
+                assertTrue(cache.size() <= 100);
+            }
+            assertEquals(100, cache.size());
+            assertEquals(100, cache.getMap().size(SizeMode.EXACT));
+            assertEquals(900, cache.getEvictionCount());
+            assertEquals(999, cache.get(999)); // the latest insert is never the victim
+        }
+    }
+
+    @Test
+    void recentlyReadEntriesSurvive() {
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : BucketSuppliers.<Integer,Integer>allBuckets()) {
+            BoundedCache<Integer,Integer> cache = new BoundedCache<>(64, supplier);
+            for(int i=0;i<64;i++) cache.put(i, i);
+            for(int i=64;i<1000;i++) {
+                for(int hot=0;hot<8;hot++) assertEquals(hot, cache.get(hot));
+                cache.put(i, i);
+            }
+            for(int hot=0;hot<8;hot++) assertEquals(hot, cache.get(hot));
+        }
+    }
+
+    @Test
+    void countsHitsMissesAndEvictions() {
+        BoundedCache<Integer,Integer> cache = new BoundedCache<>(2, Bucket::new);
+        assertEquals(0, cache.getHitRate());
+        cache.put(1, 1);
+        cache.put(2, 2);
+        assertEquals(1, cache.put(1, 10)); // update, nothing evicted
+        assertEquals(0, cache.getEvictionCount());
+        cache.get(1);
+        cache.get(3);
+        cache.put(3, 3);
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(2));
+        assertEquals(10, cache.get(1));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRate());
+        assertEquals(3, cache.remove(3));
+        assertEquals(1, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new BoundedCache<Integer,Integer>(0, Bucket::new));
+    }
+
+    @Test
+    void concurrentWritersRespectBound() throws InterruptedException {
+        int threads = 8, opsPerThread = 5000, max = 500;
+        for (BoundedCache.Policy policy : BoundedCache.Policy.values())
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : BucketSuppliers.<Integer,Integer>allBuckets()) {
+            BoundedCache<Integer,Integer> cache = new BoundedCache<>(max, supplier, policy);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch latch = new CountDownLatch(threads);
+            for(int t=0;t<threads;t++) {
+                int base = t * opsPerThread;
+                executor.submit(() -> {
+                    for(int i=0;i<opsPerThread;i++) {
+                        cache.put(base + i, i);
+                        cache.get(base + i / 2);
+                    }
+                    latch.countDown();
+                });
+            }
+            latch.await();
+            executor.shutdown();
+
+            assertEquals(max, cache.size());
+            assertEquals(max, cache.getMap().size(SizeMode.EXACT));
+            assertEquals(threads * opsPerThread - max, cache.getEvictionCount());
+        }
+    }
+
+    @Test
+    void tinyLfuKeepsHotKeysThroughScan() {
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : BucketSuppliers.<Integer,Integer>allBuckets()) {
+            BoundedCache<Integer,Integer> cache = new BoundedCache<>(100, supplier, BoundedCache.Policy.W_TINY_LFU);
+            for(int round=0;round<5;round++) {
+                for(int hot=0;hot<50;hot++) {
+                    if (cache.get(hot) == null) cache.put(hot, hot);
+                }
+            }
+            // one-hit keys, each read once and inserted on the miss, while the hot keys stay in use
+            for(int i=1000;i<11000;i++) {
+                if (cache.get(i) == null) cache.put(i, i);
+                int hot = i % 50;
+                if (cache.get(hot) == null) cache.put(hot, hot);
+            }
+            assertEquals(100, cache.size());
+            for(int hot=0;hot<50;hot++) assertEquals(hot, cache.getMap().get(hot));
+            assertTrue(cache.getRejectionCount() > 0);
+        }
+    }
+
+    @Test
+    void sketchCountsSaturatesAndAges() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        assertEquals(0, sketch.frequency("a"));
+        for(int i=0;i<5;i++) sketch.increment("a");
+        assertEquals(5, sketch.frequency("a"));
+        for(int i=0;i<20;i++) sketch.increment("b");
+        assertEquals(15, sketch.frequency("b"));
+
+        // 10 x 64 counted increments trigger aging, which halves every counter
+        for(int i=0;i<700;i++) sketch.increment("filler-" + (i % 200));
+        assertTrue(sketch.frequency("a") <= 3);
+        assertTrue(sketch.frequency("b") <= 8);
+    }
+
+    @Test
+    void getOrLoadCachesWithinBound() {
+        for (BoundedCache.Policy policy : BoundedCache.Policy.values()) {
+            BoundedCache<Integer,Integer> cache = new BoundedCache<>(10, Bucket::new, policy);
+            AtomicInteger loads = new AtomicInteger();
+            for(int round=0;round<3;round++) {
+                for(int i=0;i<10;i++) assertEquals(i * 2, cache.getOrLoad(i, key -> { loads.incrementAndGet(); return key * 2; }));
+            }
+            assertEquals(10, loads.get());
+            assertEquals(20, cache.getHitCount());
+            assertEquals(10, cache.getMissCount());
+            for(int i=10;i<100;i++) cache.getOrLoad(i, key -> key * 2);
+            assertEquals(10, cache.size());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package concurrentmap;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Bucket factories shared by the tests that run against every bucket type.
+ */
+final class BucketSuppliers {
+
+    private BucketSuppliers() {
+    }
+
+    /**
+     * Returns one supplier per bucket implementation. Striped buckets get a
+     * fresh lock pool on every call.
+     */
+    static <K,V> List<Supplier<? extends BucketInterface<K,V>>> allBuckets() {
+        return List.of(Bucket::new, LockFreeBucket::new, TreeBucket::new, AdaptiveBucket::new,
+                StampedBucket::new, new StripedLocks()::newBucket);
+    }
+}
@@ -1,18 +1,68 @@
 package concurrentmap;
 
 import org.junit.jupiter.api.Test;
+import utils.HashStrategy;
 import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.StreamSupport;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 /**
  * Unit tests for ConcurrentCustomMap
  * - Single-threaded correctness
  * - Multi-threaded thread safety
- * - Modular bucket support (Bucket, LockFreeBucket, TreeBucket)
+ * - Modular bucket support (Bucket, LockFreeBucket, TreeBucket, AdaptiveBucket, StampedBucket, StripedBucket)
+ * - Lazy, weakly consistent iteration and keySet/values views, never exposing removed values
+ * - Parallel bulk operations (forEach, search, reduce, removeIf, replaceAll)
+ * - Atomic compute, computeIfAbsent, computeIfPresent and merge
+ * - Conditional writes (putIfAbsent, replace, remove(key, value)) and put's previous value; null values are rejected
+ * - Batched putAll/getAll grouped by bucket
+ * - getOrLoad runs one loader per missing key and shares its result or failure
  */
 class ConcurrentCustomMapTest {
 
+    // Non-comparable key whose instances all share one hash code
+    private static final class CollidingKey {
+        final int id;
+
+        CollidingKey(int id) { this.id = id; }
+
+        @Override
+        public int hashCode() { return 42; }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey other && other.id == id;
+        }
+    }
+
+    // Key comparable to Strings rather than to itself, colliding like CollidingKey
+    private static final class ForeignComparableKey implements Comparable<String> {
+        final int id;
+
+        ForeignComparableKey(int id) { this.id = id; }
+
+        @Override
+        public int compareTo(String o) { return Integer.compare(id, o.length()); }
+
+        @Override
+        public int hashCode() { return 42; }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ForeignComparableKey other && other.id == id;
+        }
+    }
+
     private <K,V> ConcurrentCustomMap<K,V> createMapWithSupplier(Supplier<? extends BucketInterface<K,V>> supplier) {
         return new ConcurrentCustomMap<>(16, supplier);
     }
@@ -62,6 +112,259 @@ class ConcurrentCustomMapTest {
         assertNull(map.get("one"));
     }
 
+    @Test
+    void singleThreadPutGetRemoveAdaptiveBucket() {
+        ConcurrentCustomMap<String, Integer> map = createMapWithSupplier(AdaptiveBucket::new);
+
+        map.put("one",1);
+        map.put("two",2);
+
+        assertEquals(1, map.get("one"));
+        assertEquals(2, map.get("two"));
+        assertNull(map.get("three"));
+
+        assertEquals(1, map.remove("one"));
+        assertNull(map.get("one"));
+    }
+
+    @Test
+    void singleThreadPutGetRemoveStampedBucket() {
+        ConcurrentCustomMap<String, Integer> map = createMapWithSupplier(StampedBucket::new);
+
+        map.put("one",1);
+        map.put("two",2);
+
+        assertEquals(1, map.get("one"));
+        assertEquals(2, map.get("two"));
+        assertNull(map.get("three"));
+
+        assertEquals(1, map.remove("one"));
+        assertNull(map.get("one"));
+    }
+
+    @Test
+    void concurrentReadersSeeConsistentValuesStampedBucket() throws InterruptedException {
+        ConcurrentCustomMap<Integer, Integer> map = new ConcurrentCustomMap<>(4, StampedBucket::new);
+        int keys = 400;
+        for(int i=0;i<keys;i++) map.put(i, i);
+
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+        for(int t=0;t<threadCount;t++) {
+            boolean writer = t % 4 == 0;
+            executor.submit(() -> {
+                for(int r=0;r<20;r++) {
+                    for(int i=0;i<keys;i++) {
+                        if(writer) {
+                            // odd keys churn, even keys always hold key * 2 or key
+                            if(i % 2 == 1) { map.remove(i); map.put(i, i); }
+                            else map.put(i, i * 2);
+                        } else if(i % 2 == 0) {
+                            Integer v = map.get(i);
+                            if(v == null || (v != i && v != i * 2)) errors.add(i + "=" + v);
+                        }
+                    }
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+
+        assertTrue(errors.isEmpty(), errors.toString());
+        assertEquals(keys, map.size(SizeMode.EXACT));
+    }
+
+    @Test
+    void stripedBucketsShareAFixedPoolOfLocks() throws InterruptedException {
+        StripedLocks stripes = new StripedLocks(8);
+        ConcurrentCustomMap<Integer, Integer> map = new ConcurrentCustomMap<>(1024, stripes::newBucket);
+        assertEquals(8, stripes.getStripeCount());
+        assertThrows(IllegalArgumentException.class, () -> new StripedLocks(0));
+
+        // only the owner may release a stripe
+        StripedLocks.PaddedLock stripe = stripes.stripe(0);
+        assertThrows(IllegalMonitorStateException.class, stripe::unlock);
+        stripe.lock();
+        CompletableFuture<Void> foreignUnlock = CompletableFuture.runAsync(stripe::unlock);
+        ExecutionException error = assertThrows(ExecutionException.class, foreignUnlock::get);
+        assertInstanceOf(IllegalMonitorStateException.class, error.getCause());
+        assertTrue(stripe.isHeldExclusively());
+        stripe.unlock();
+        assertFalse(stripe.isHeldExclusively());
+
+        int threadCount = 8;
+        int keysPerThread = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for(int t=0;t<threadCount;t++) {
+            int threadId = t;
+            executor.submit(() -> {
+                for(int i=0;i<keysPerThread;i++) {
+                    int key = threadId * keysPerThread + i;
+                    map.put(key, key);
+                    if(i % 2 == 0) map.remove(key);
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+
+        assertEquals(threadCount * keysPerThread / 2, map.size(SizeMode.EXACT));
+        for(int key=0;key<threadCount*keysPerThread;key++) {
+            assertEquals(key % 2 == 0 ? null : key, map.get(key));
+        }
+    }
+
+    @Test
+    void bucketsAreAllocatedOnFirstWrite() {
+        AtomicInteger created = new AtomicInteger();
+        ConcurrentCustomMap<Integer, Integer> map = new ConcurrentCustomMap<>(1 << 20, () -> {
+            created.incrementAndGet();
+            return new Bucket<>();
+        });
+        assertEquals(0, created.get());
+
+        assertNull(map.get(1));
+        assertNull(map.remove(1));
+        assertEquals(0, map.size(SizeMode.EXACT));
+        assertTrue(map.entrySet().isEmpty());
+        assertEquals(0, created.get());
+
+        map.put(1, 1);
+        map.put(1, 2);
+        map.put(2, 2);
+        assertEquals(2, created.get());
+        assertEquals(2, map.get(1));
+        assertEquals(2, map.size(SizeMode.EXACT));
+    }
+
+    @Test
+    void adaptiveBucketTreeifiesAndUntreeifies() {
+        AdaptiveBucket<Integer, Integer> bucket = new AdaptiveBucket<>();
+        int keys = 100;
+        for(int i=0;i<keys;i++) {
+            // every 10 keys share a hash, to exercise tied entries inside a tree node
+            bucket.put(i / 10, i, i);
+        }
+        assertTrue(bucket.isTreeified());
+        assertEquals(keys, bucket.size());
+        for(int i=0;i<keys;i++) {
+            assertEquals(i, bucket.get(i / 10, i));
+        }
+        assertNull(bucket.get(3, 99));
+
+        for(int i=0;i<keys - AdaptiveBucket.UNTREEIFY_THRESHOLD;i++) {
+            assertEquals(i, bucket.remove(i / 10, i));
+        }
+        assertFalse(bucket.isTreeified());
+        assertEquals(AdaptiveBucket.UNTREEIFY_THRESHOLD, bucket.size());
+        for(int i=keys - AdaptiveBucket.UNTREEIFY_THRESHOLD;i<keys;i++) {
+            assertEquals(i, bucket.get(i / 10, i));
+        }
+    }
+
+    @Test
+    void treeBucketsAcceptNonComparableAndCollidingKeys() {
+        // "Aa" and "BB" share a hash code, so all 2^8 combinations below collide fully
+        List<String> collidingStrings = new ArrayList<>(List.of(""));
+        for(int i=0;i<8;i++) {
+            List<String> next = new ArrayList<>();
+            for(String prefix : collidingStrings) {
+                next.add(prefix + "Aa");
+                next.add(prefix + "BB");
+            }
+            collidingStrings = next;
+        }
+
+        for(Supplier<? extends BucketInterface<Object,Integer>> supplier :
+                List.<Supplier<? extends BucketInterface<Object,Integer>>>of(TreeBucket::new, AdaptiveBucket::new)) {
+            ConcurrentCustomMap<Object, Integer> map = createMapWithSupplier(supplier);
+            for(int i=0;i<300;i++) {
+                map.put(new CollidingKey(i), i);
+            }
+            for(int i=0;i<collidingStrings.size();i++) {
+                map.put(collidingStrings.get(i), i);
+            }
+
+            for(int i=0;i<300;i++) {
+                assertEquals(i, map.get(new CollidingKey(i)));
+            }
+            for(int i=0;i<collidingStrings.size();i++) {
+                assertEquals(i, map.get(collidingStrings.get(i)));
+            }
+            assertNull(map.get(new CollidingKey(300)));
+
+            // comparable, but not to itself: compareTo must not be called
+            for(int i=0;i<20;i++) map.put(new ForeignComparableKey(i), -i);
+            for(int i=0;i<20;i++) assertEquals(-i, map.get(new ForeignComparableKey(i)));
+            for(int i=0;i<20;i++) assertEquals(-i, map.remove(new ForeignComparableKey(i)));
+
+            for(int i=0;i<300;i+=2) {
+                assertEquals(i, map.remove(new CollidingKey(i)));
+            }
+            for(int i=0;i<300;i++) {
+                assertEquals(i % 2 == 0 ? null : i, map.get(new CollidingKey(i)));
+            }
+            assertEquals(150 + collidingStrings.size(), map.size(SizeMode.EXACT));
+        }
+    }
+
+    @Test
+    void everyHashStrategyWithMaskAndModuloIndexing() {
+        HashStrategy[] strategies = {HashStrategy.IDENTITY, HashStrategy.SPREAD,
+                HashStrategy.MURMUR3, HashStrategy.randomized()};
+        for(HashStrategy strategy : strategies) {
+            for(int numBuckets : new int[]{16, 13}) {
+                ConcurrentCustomMap<Integer, Integer> map =
+                        new ConcurrentCustomMap<>(numBuckets, Bucket::new, strategy);
+                for(int i=-500;i<500;i++) {
+                    map.put(i << 16, i);
+                }
+                for(int i=-500;i<500;i++) {
+                    assertEquals(i, map.get(i << 16));
+                }
+                assertNull(map.get(7));
+                assertEquals(0, map.remove(0));
+                assertEquals(999, map.size());
+            }
+        }
+    }
+
+    @Test
+    void sizeModesAgreeAfterConcurrentWrites() throws InterruptedException {
+        ConcurrentCustomMap<Integer, Integer> map = createMapWithSupplier(Bucket::new);
+        int threadCount = 8;
+        int operationsPerThread = 1000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for(int t=0;t<threadCount;t++) {
+            int threadId = t;
+            executor.submit(() -> {
+                for(int i=0;i<operationsPerThread;i++) {
+                    int key = threadId*operationsPerThread+i;
+                    map.put(key,i);
+                    map.put(key,i+1); // update must not be counted twice
+                    if(i % 4 == 0) map.remove(key);
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+
+        int expectedSize = threadCount * (operationsPerThread - operationsPerThread / 4);
+        assertEquals(expectedSize, map.size());
+        assertEquals(expectedSize, map.size(SizeMode.EXACT));
+    }
+
     @Test
     void multiThreadedPutAndGet() throws InterruptedException {
         ConcurrentCustomMap<Integer, Integer> map = createMapWithSupplier(Bucket::new);
@@ -92,6 +395,45 @@ class ConcurrentCustomMapTest {
         assertEquals(expectedSize, actualCount);
     }
 
+    @Test
+    void concurrentChurnLockFreeBucket() throws InterruptedException {
+        // few buckets so that removes constantly unlink neighbours of other threads' keys
+        ConcurrentCustomMap<Integer, Integer> map = new ConcurrentCustomMap<>(2, LockFreeBucket::new);
+        int threadCount = 8;
+        int keysPerThread = 200;
+        int rounds = 20;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for(int t=0;t<threadCount;t++) {
+            int threadId = t;
+            executor.submit(() -> {
+                for(int r=0;r<rounds;r++) {
+                    for(int i=0;i<keysPerThread;i++) {
+                        map.put(threadId*keysPerThread+i, r);
+                    }
+                    for(int i=0;i<keysPerThread;i+=2) {
+                        map.remove(threadId*keysPerThread+i);
+                    }
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+
+        for(int i=0;i<threadCount*keysPerThread;i++) {
+            if(i % 2 == 0) {
+                assertNull(map.get(i));
+            } else {
+                assertEquals(rounds - 1, map.get(i));
+            }
+        }
+        assertEquals(threadCount*keysPerThread/2, map.size(SizeMode.EXACT));
+        assertEquals(threadCount*keysPerThread/2, map.size());
+    }
+
     @Test
     void concurrentReadWriteRemove() throws InterruptedException {
         ConcurrentCustomMap<Integer, Integer> map = createMapWithSupplier(Bucket::new);
@@ -121,5 +463,387 @@ class ConcurrentCustomMapTest {
         }
         assertEquals(0, nonNullCount);
     }
-}
 
+    @Test
+    void iteratorAndViewsCoverEveryEntry() {
+        List<Supplier<? extends BucketInterface<Integer,Integer>>> suppliers =
+                List.of(Bucket::new, LockFreeBucket::new, TreeBucket::new, AdaptiveBucket::new, StampedBucket::new);
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : suppliers) {
+            ConcurrentCustomMap<Integer,Integer> map = new ConcurrentCustomMap<>(64, supplier);
+            for(int i=0;i<1000;i++) map.put(i, i * 2);
+
+            Set<Integer> seen = new HashSet<>();
+            for (Entry<Integer,Integer> e : map) {
+                assertEquals(e.getKey() * 2, e.getValue());
+                assertTrue(seen.add(e.getKey()));
+            }
+            assertEquals(1000, seen.size());
+            assertEquals(seen, new HashSet<>(map.keySet()));
+            assertEquals(1000, map.entrySet().size());
+            assertTrue(map.keySet().contains(999));
+            assertFalse(map.keySet().contains(1000));
+            long sum = 0;
+            for (int v : map.values()) sum += v;
+            assertEquals(999L * 1000, sum);
+        }
+    }
+
+    @Test
+    void iteratorRemoveAndKeySetRemove() {
+        ConcurrentCustomMap<Integer,Integer> map = createMapWithSupplier(Bucket::new);
+        for(int i=0;i<100;i++) map.put(i, i);
+        for (Iterator<Entry<Integer,Integer>> it = map.iterator(); it.hasNext(); ) {
+            if (it.next().getKey() % 2 == 0) it.remove();
+        }
+        assertTrue(map.keySet().remove(1));
+        assertFalse(map.keySet().remove(1));
+        assertEquals(49, map.size());
+        for(int i=0;i<100;i++) assertEquals(i % 2 == 0 || i == 1 ? null : i, map.get(i));
+    }
+
+    @Test
+    void iterationDuringConcurrentWritesIsWeaklyConsistent() throws InterruptedException {
+        ConcurrentCustomMap<Integer,Integer> map = createMapWithSupplier(LockFreeBucket::new);
+        for(int i=0;i<1000;i++) map.put(i, i); // stable keys, never touched by the writer
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch done = new CountDownLatch(1);
+        executor.submit(() -> {
+            for(int i=1000;i<20000;i++) {
+                map.put(i, i);
+                map.remove(i - 500);
+            }
+            done.countDown();
+        });
+        while (done.getCount() > 0) {
+            int stable = 0;
+            for (Integer key : map.keySet()) {
+                if (key < 500) stable++;
+            }
+            assertEquals(500, stable); // no entry lost or repeated, no exception
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void lockFreeIterationDuringRemovesSeesOnlyValues() throws InterruptedException {
+        ConcurrentCustomMap<Integer,Integer> map = createMapWithSupplier(LockFreeBucket::new);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch done = new CountDownLatch(1);
+        executor.submit(() -> {
+            for(int round=0;round<200;round++) {
+                for(int i=0;i<500;i++) map.put(i, i);
+                for(int i=0;i<500;i++) map.remove(i);
+            }
+            done.countDown();
+        });
+        while (done.getCount() > 0) {
+            for (Object value : map.values()) assertInstanceOf(Integer.class, value);
+            Long sum = map.reduce(Long.MAX_VALUE, (k, v) -> (long) v, Long::sum);
+            assertTrue(sum == null || sum >= 0);
+            map.forEach(1, (k, v) -> assertEquals(k, v));
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void spliteratorSplitsByBucketRange() {
+        ConcurrentCustomMap<Integer,Integer> map = new ConcurrentCustomMap<>(256, Bucket::new);
+        for(int i=0;i<10000;i++) map.put(i, 1);
+        assertNotNull(map.spliterator().trySplit());
+        assertEquals(10000, StreamSupport.stream(map.spliterator(), true).count());
+        assertEquals(10000, StreamSupport.stream(map.spliterator(), true)
+                .mapToInt(Entry::getValue).sum());
+        assertEquals(49995000L, map.keySet().parallelStream().mapToLong(Integer::longValue).sum());
+    }
+
+    @Test
+    void bulkOperationsSequentialAndParallel() {
+        for (long threshold : new long[]{Long.MAX_VALUE, 1}) {
+            ConcurrentCustomMap<Integer,Integer> map = new ConcurrentCustomMap<>(256, LockFreeBucket::new);
+            for(int i=0;i<10000;i++) map.put(i, i);
+
+            LongAdder sum = new LongAdder();
+            Set<String> threads = ConcurrentHashMap.newKeySet();
+            map.forEach(threshold, (k, v) -> {
+                sum.add(v);
+                threads.add(Thread.currentThread().getName());
+            });
+            assertEquals(49995000L, sum.sum());
+            if (threshold == Long.MAX_VALUE) assertEquals(1, threads.size());
+
+            assertEquals(Long.valueOf(49995000L), map.reduce(threshold, (k, v) -> (long) v, Long::sum));
+            assertNull(map.reduce(threshold, (k, v) -> null, (Long a, Long b) -> a + b));
+            assertEquals("found-4242", map.search(threshold, (k, v) -> k == 4242 ? "found-" + v : null));
+            assertNull(map.search(threshold, (k, v) -> null));
+
+            assertTrue(map.removeIf(threshold, (k, v) -> k % 2 == 1));
+            assertFalse(map.removeIf(threshold, (k, v) -> k % 2 == 1));
+            assertEquals(5000, map.size());
+
+            map.replaceAll(threshold, (k, v) -> v * 10);
+            for(int i=0;i<10000;i++) assertEquals(i % 2 == 0 ? Integer.valueOf(i * 10) : null, map.get(i));
+            assertThrows(NullPointerException.class, () -> map.replaceAll(threshold, (k, v) -> null));
+        }
+    }
+
+    @Test
+    void computeFamilySingleThread() {
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : BucketSuppliers.<Integer,Integer>allBuckets()) {
+            ConcurrentCustomMap<Integer,Integer> map = new ConcurrentCustomMap<>(4, supplier);
+            assertEquals(1, map.compute(1, (k, v) -> v == null ? 1 : v + 1));
+            assertEquals(2, map.compute(1, (k, v) -> v == null ? 1 : v + 1));
+            assertNull(map.compute(2, (k, v) -> null));
+            assertEquals(1, map.size());
+
+            assertEquals(2, map.computeIfAbsent(1, k -> 100));
+            assertEquals(30, map.computeIfAbsent(3, k -> k * 10));
+            assertNull(map.computeIfAbsent(4, k -> null));
+            assertEquals(2, map.size());
+
+            assertNull(map.computeIfPresent(5, (k, v) -> 1));
+            assertEquals(31, map.computeIfPresent(3, (k, v) -> v + 1));
+            assertNull(map.computeIfPresent(3, (k, v) -> null));
+            assertNull(map.get(3));
+            assertEquals(1, map.size());
+
+            assertEquals(7, map.merge(6, 7, Integer::sum));
+            assertEquals(14, map.merge(6, 7, Integer::sum));
+            assertNull(map.merge(6, 7, (a, b) -> null));
+            assertEquals(1, map.size());
+
+            // enough keys in one bucket to treeify and untreeify adaptive buckets
+            for(int i=0;i<40;i++) map.merge(i * 4, 1, Integer::sum);
+            for(int i=0;i<40;i++) map.computeIfPresent(i * 4, (k, v) -> null);
+            assertEquals(map.size(SizeMode.EXACT), map.size());
+            assertEquals(2, map.get(1));
+        }
+    }
+
+    @Test
+    void concurrentMergeLosesNoIncrements() throws InterruptedException {
+        int threads = 8, increments = 2000, keys = 20;
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : BucketSuppliers.<Integer,Integer>allBuckets()) {
+            ConcurrentCustomMap<Integer,Integer> map = new ConcurrentCustomMap<>(8, supplier);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch latch = new CountDownLatch(threads);
+            for(int t=0;t<threads;t++) {
+                executor.submit(() -> {
+                    for(int i=0;i<increments;i++) {
+                        map.merge(i % keys, 1, Integer::sum);
+                        map.compute(-1 - i % keys, (k, v) -> v == null ? 1 : v + 1);
+                    }
+                    latch.countDown();
+                });
+            }
+            latch.await();
+            executor.shutdown();
+
+            for(int k=0;k<keys;k++) {
+                assertEquals(threads * increments / keys, map.get(k));
+                assertEquals(threads * increments / keys, map.get(-1 - k));
+            }
+            assertEquals(2 * keys, map.size());
+        }
+    }
+
+    @Test
+    void conditionalWritesSingleThread() {
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : BucketSuppliers.<Integer,Integer>allBuckets()) {
+            ConcurrentCustomMap<Integer,Integer> map = new ConcurrentCustomMap<>(4, supplier);
+            assertNull(map.put(1, 10));
+            assertEquals(10, map.put(1, 11));
+
+            assertEquals(11, map.putIfAbsent(1, 99));
+            assertNull(map.putIfAbsent(2, 20));
+            assertEquals(20, map.get(2));
+            assertEquals(2, map.size());
+
+            assertFalse(map.replace(1, 10, 12));
+            assertTrue(map.replace(1, 11, 12));
+            assertFalse(map.replace(3, 0, 1));
+            assertEquals(12, map.get(1));
+
+            assertFalse(map.remove(2, 21));
+            assertTrue(map.remove(2, 20));
+            assertFalse(map.remove(2, 20));
+            assertNull(map.get(2));
+            assertEquals(1, map.size());
+            assertEquals(map.size(SizeMode.EXACT), map.size());
+
+            // null values are rejected, so a null previous value always means the key was absent
+            assertThrows(NullPointerException.class, () -> map.put(5, null));
+            assertThrows(NullPointerException.class, () -> map.putIfAbsent(5, null));
+            assertThrows(NullPointerException.class, () -> map.replace(1, 12, null));
+            Map<Integer,Integer> withNull = new HashMap<>();
+            withNull.put(6, 6);
+            withNull.put(7, null);
+            assertThrows(NullPointerException.class, () -> map.putAll(withNull));
+            assertEquals(1, map.size());
+            assertEquals(map.size(SizeMode.EXACT), map.size());
+        }
+    }
+
+    @Test
+    void optimisticRetryLoopsLoseNoUpdates() throws InterruptedException {
+        int threads = 8, increments = 1000;
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : BucketSuppliers.<Integer,Integer>allBuckets()) {
+            ConcurrentCustomMap<Integer,Integer> map = new ConcurrentCustomMap<>(8, supplier);
+            AtomicInteger inserted = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch latch = new CountDownLatch(threads);
+            for(int t=0;t<threads;t++) {
+                executor.submit(() -> {
+                    for(int i=0;i<increments;i++) {
+                        while (true) {
+                            Integer old = map.putIfAbsent(0, 1);
+                            if (old == null || map.replace(0, old, old + 1)) break;
+                        }
+                        // claim-once keys: exactly one thread wins each
+                        if (map.putIfAbsent(1000 + i, 0) == null) inserted.incrementAndGet();
+                    }
+                    latch.countDown();
+                });
+            }
+            latch.await();
+            executor.shutdown();
+
+            assertEquals(threads * increments, map.get(0));
+            assertEquals(increments, inserted.get());
+            assertEquals(increments + 1, map.size());
+            for(int i=0;i<increments;i++) assertTrue(map.remove(1000 + i, 0));
+            assertEquals(1, map.size());
+        }
+    }
+
+    @Test
+    void batchedPutAllAndGetAll() {
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : BucketSuppliers.<Integer,Integer>allBuckets()) {
+            ConcurrentCustomMap<Integer,Integer> map = new ConcurrentCustomMap<>(16, supplier);
+            for(int i=0;i<100;i+=2) map.put(i, -i);
+            Map<Integer,Integer> batch = new HashMap<>();
+            for(int i=0;i<1000;i++) batch.put(i, i);
+            map.putAll(batch);
+            assertEquals(1000, map.size());
+            assertEquals(1000, map.size(SizeMode.EXACT));
+
+            List<Integer> keys = new ArrayList<>();
+            for(int i=-50;i<1050;i++) keys.add(i);
+            keys.add(7); // repeated keys are looked up twice
+            Map<Integer,Integer> found = map.getAll(keys);
+            assertEquals(batch, found);
+            assertTrue(map.getAll(List.of()).isEmpty());
+        }
+    }
+
+    @Test
+    void concurrentBatchesLoseNoKeys() throws InterruptedException {
+        int threads = 8, batches = 20, batchSize = 500;
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : BucketSuppliers.<Integer,Integer>allBuckets()) {
+            ConcurrentCustomMap<Integer,Integer> map = new ConcurrentCustomMap<>(64, supplier);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch latch = new CountDownLatch(threads);
+            for(int t=0;t<threads;t++) {
+                int id = t;
+                executor.submit(() -> {
+                    for(int b=0;b<batches;b++) {
+                        Map<Integer,Integer> batch = new HashMap<>();
+                        // half of each batch overlaps the other threads' keys
+                        for(int i=0;i<batchSize;i++) batch.put(i % 2 == 0 ? b * batchSize + i : -(id * batches * batchSize + b * batchSize + i), id);
+                        map.putAll(batch);
+                    }
+                    latch.countDown();
+                });
+            }
+            latch.await();
+            executor.shutdown();
+
+            int expected = batches * batchSize / 2 + threads * batches * batchSize / 2;
+            assertEquals(expected, map.size());
+            assertEquals(expected, map.size(SizeMode.EXACT));
+        }
+    }
+
+    @Test
+    void getOrLoadRunsOneLoaderPerKey() throws InterruptedException {
+        int threads = 8, keys = 4;
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : BucketSuppliers.<Integer,Integer>allBuckets()) {
+            ConcurrentCustomMap<Integer,Integer> map = new ConcurrentCustomMap<>(2, supplier);
+            AtomicInteger[] loads = new AtomicInteger[keys];
+            for(int k=0;k<keys;k++) loads[k] = new AtomicInteger();
+            ConcurrentLinkedQueue<Integer> results = new ConcurrentLinkedQueue<>();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch latch = new CountDownLatch(threads);
+            for(int t=0;t<threads;t++) {
+                executor.submit(() -> {
+                    try {
+                        start.await();
+                        for(int k=0;k<keys;k++) {
+                            results.add(map.getOrLoad(k, key -> {
+                                loads[key].incrementAndGet();
+                                try { Thread.sleep(20); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+                                return key * 10;
+                            }) - k * 10);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    latch.countDown();
+                });
+            }
+            start.countDown();
+            latch.await();
+            executor.shutdown();
+
+            for(int k=0;k<keys;k++) {
+                assertEquals(1, loads[k].get());
+                assertEquals(k * 10, map.get(k));
+            }
+            assertEquals(threads * keys, results.size());
+            assertTrue(results.stream().allMatch(r -> r == 0));
+            assertEquals(keys, map.size());
+        }
+    }
+
+    @Test
+    void getOrLoadSharesFailuresAndStoresNoNull() throws InterruptedException {
+        int threads = 8;
+        ConcurrentCustomMap<Integer,Integer> map = new ConcurrentCustomMap<>(16, LockFreeBucket::new);
+        assertNull(map.getOrLoad(1, key -> null));
+        assertNull(map.get(1));
+        assertEquals(0, map.size());
+        assertEquals(5, map.getOrLoad(2, key -> 5));
+        assertEquals(5, map.getOrLoad(2, key -> { throw new AssertionError("loaded a present key"); }));
+
+        AtomicInteger loads = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(threads);
+        for(int t=0;t<threads;t++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    map.getOrLoad(3, key -> {
+                        loads.incrementAndGet();
+                        try { Thread.sleep(50); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+                        throw new IllegalStateException("backend down");
+                    });
+                } catch (IllegalStateException e) {
+                    failures.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                latch.countDown();
+            });
+        }
+        start.countDown();
+        latch.await();
+        executor.shutdown();
+
+        assertEquals(threads, failures.get());
+        assertTrue(loads.get() >= 1 && loads.get() < threads);
+        assertNull(map.get(3));
+        assertEquals(30, map.getOrLoad(3, key -> key * 10)); // a failed load is retried by the next caller
+    }
+}
@@ -0,0 +1,155 @@
+package concurrentmap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Unit tests for DurableMap and WriteAheadLog
+ * - Writes are replayed into a fresh map on reopen, in both write orders
+ * - A torn or corrupt tail ends replay and is truncated
+ * - Concurrent writers share group commits, and the metrics add up
+ * - Closed logs reject writes, and a failed write fails every later record
+ */
+class DurableMapTest {
+
+    @TempDir
+    Path dir;
+
+    private static DurableMap<Integer,String> open(Path log, DurableMap.WriteOrder order) throws IOException {
+        return new DurableMap<>(new ConcurrentCustomMap<>(16, Bucket::new), log, Codec.INT, Codec.STRING, order);
+    }
+
+    @Test
+    void writesAreReplayedOnReopen() throws IOException {
+        for (DurableMap.WriteOrder order : DurableMap.WriteOrder.values()) {
+            Path log = dir.resolve(order + ".wal");
+            try (DurableMap<Integer,String> map = open(log, order)) {
+                for(int i=0;i<500;i++) map.put(i, "value-" + i);
+                map.put(1, "updated");
+                assertEquals("value-2", map.remove(2));
+                assertNull(map.remove(1000));
+                assertEquals(499, map.size());
+            }
+
+            try (DurableMap<Integer,String> map = open(log, order)) {
+                assertEquals(499, map.size());
+                assertEquals("updated", map.get(1));
+                assertNull(map.get(2));
+                for(int i=3;i<500;i++) assertEquals("value-" + i, map.get(i));
+            }
+        }
+    }
+
+    @Test
+    void tornTailIsTruncated() throws IOException {
+        Path log = dir.resolve("torn.wal");
+        try (DurableMap<Integer,String> map = open(log, DurableMap.WriteOrder.LOG_FIRST)) {
+            for(int i=0;i<10;i++) map.put(i, "v" + i);
+        }
+        long intact = Files.size(log);
+        // half a frame, as left by a crash in the middle of a write
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(6).putInt(100).flip());
+        }
+
+        try (DurableMap<Integer,String> map = open(log, DurableMap.WriteOrder.LOG_FIRST)) {
+            assertEquals(10, map.size());
+            assertEquals(intact, Files.size(log));
+            map.put(10, "v10");
+        }
+        // corrupt the last record: replay stops before it
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xff}), Files.size(log) - 1);
+        }
+        try (DurableMap<Integer,String> map = open(log, DurableMap.WriteOrder.LOG_FIRST)) {
+            assertEquals(10, map.size());
+            assertNull(map.get(10));
+            assertEquals(intact, Files.size(log));
+        }
+    }
+
+    @Test
+    void concurrentWritersShareCommits() throws Exception {
+        Path log = dir.resolve("concurrent.wal");
+        int threads = 8, opsPerThread = 200;
+        try (DurableMap<Integer,String> map = open(log, DurableMap.WriteOrder.LOG_FIRST)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch latch = new CountDownLatch(threads);
+            for(int t=0;t<threads;t++) {
+                int base = t * opsPerThread;
+                executor.submit(() -> {
+                    for(int i=0;i<opsPerThread;i++) map.put(base + i, "v" + (base + i));
+                    latch.countDown();
+                });
+            }
+            latch.await();
+            executor.shutdown();
+
+            WriteAheadLog wal = map.getLog();
+            assertEquals(threads * opsPerThread, map.size());
+            assertEquals(threads * opsPerThread, wal.getRecordCount());
+            assertTrue(wal.getCommitCount() >= 1 && wal.getCommitCount() <= wal.getRecordCount());
+            assertTrue(wal.getMaxBatchSize() >= wal.getAverageBatchSize());
+            assertTrue(wal.getMaxSyncNanos() >= wal.getAverageSyncNanos());
+        }
+        try (DurableMap<Integer,String> map = open(log, DurableMap.WriteOrder.LOG_FIRST)) {
+            for(int i=0;i<threads * opsPerThread;i++) assertEquals("v" + i, map.get(i));
+        }
+    }
+
+    @Test
+    void queuedRecordsAreCommittedInBatches() throws IOException {
+        Path file = dir.resolve("raw.wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            // every record is queued before the first await, so later ones pile up behind the first fsync
+            List<CompletableFuture<Void>> commits = new ArrayList<>();
+            for(int i=0;i<1000;i++) commits.add(wal.append(new byte[]{(byte) i}));
+            for (CompletableFuture<Void> c : commits) WriteAheadLog.await(c);
+            assertEquals(1000, wal.getRecordCount());
+            assertTrue(wal.getMaxBatchSize() > 1);
+            assertTrue(wal.getCommitCount() < 1000);
+        }
+        List<byte[]> replayed = new ArrayList<>();
+        try (WriteAheadLog wal = WriteAheadLog.open(file, replayed::add)) {
+            assertEquals(0, wal.getCommitCount()); // replay writes nothing
+        }
+        assertEquals(1000, replayed.size());
+        for(int i=0;i<1000;i++) assertEquals((byte) i, replayed.get(i)[0]);
+    }
+
+    @Test
+    void failedWritePoisonsTheLog() throws IOException {
+        Path file = dir.resolve("poisoned.wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            wal.appendAndWait(new byte[]{1});
+            wal.channel.close(); // the next write fails
+            assertThrows(UncheckedIOException.class, () -> wal.appendAndWait(new byte[]{2}));
+            CompletableFuture<Void> later = wal.append(new byte[]{3});
+            assertTrue(later.isCompletedExceptionally()); // failed up front, never written after the bad frame
+            assertThrows(UncheckedIOException.class, () -> WriteAheadLog.await(later));
+        }
+        List<byte[]> replayed = new ArrayList<>();
+        WriteAheadLog.open(file, replayed::add).close();
+        assertEquals(1, replayed.size());
+    }
+
+    @Test
+    void closedMapRejectsWrites() throws IOException {
+        DurableMap<Integer,String> map = open(dir.resolve("closed.wal"), DurableMap.WriteOrder.APPLY_FIRST);
+        map.put(1, "one");
+        map.close();
+        assertThrows(IllegalStateException.class, () -> map.put(2, "two"));
+        assertEquals("one", map.get(1));
+    }
+}
@@ -0,0 +1,173 @@
+package concurrentmap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Unit tests for ExpiringMap and TimerWheel
+ * - Expire after write and after access, with per-entry durations
+ * - Reads treat expired entries as absent before their timer runs
+ * - The wheel fires every timer once its deadline has passed, across levels
+ * - Concurrent writers, for every bucket type
+ * - A rewrite racing with the timer of its expired value survives
+ */
+class ExpiringMapTest {
+
+    @Test
+    void entriesExpireAfterWrite() throws InterruptedException {
+        for (Supplier<? extends BucketInterface<Integer,String>> supplier : BucketSuppliers.<Integer,String>allBuckets()) {
+            ExpiringMap<Integer,String> map = new ExpiringMap<>(16, supplier, 100, TimeUnit.MILLISECONDS,
+                    ExpiringMap.Expiry.AFTER_WRITE);
+            for(int i=0;i<100;i++) assertNull(map.put(i, "v" + i));
+            assertEquals("v7", map.get(7));
+            assertEquals("v7", map.put(7, "w7"));
+            Thread.sleep(250);
+
+            for(int i=0;i<100;i++) assertNull(map.get(i));
+            assertNull(map.put(7, "x7")); // the expired value is not returned
+            map.cleanUp();
+            assertEquals(1, map.size());
+            assertEquals(1, map.getMap().size(SizeMode.EXACT));
+            assertEquals(99, map.getExpirationCount());
+            assertEquals("x7", map.get(7));
+        }
+    }
+
+    @Test
+    void readsKeepEntriesAliveAfterAccess() throws InterruptedException {
+        ExpiringMap<Integer,String> map = new ExpiringMap<>(16, Bucket::new, 200, TimeUnit.MILLISECONDS,
+                ExpiringMap.Expiry.AFTER_ACCESS);
+        map.put(1, "read");
+        map.put(2, "idle");
+        for(int i=0;i<8;i++) {
+            Thread.sleep(50);
+            assertEquals("read", map.get(1));
+        }
+        assertNull(map.get(2));
+        map.cleanUp();
+        assertEquals(1, map.size());
+
+        Thread.sleep(300);
+        assertNull(map.get(1));
+        map.cleanUp();
+        assertEquals(0, map.size());
+        assertEquals(0, map.timerCount());
+    }
+
+    @Test
+    void perEntryDurationsAndRewrites() throws InterruptedException {
+        ExpiringMap<Integer,String> map = new ExpiringMap<>(16, LockFreeBucket::new, 10, TimeUnit.SECONDS,
+                ExpiringMap.Expiry.AFTER_WRITE);
+        map.put(1, "short", 50, TimeUnit.MILLISECONDS);
+        map.put(2, "default");
+        map.put(3, "rewritten", 200, TimeUnit.MILLISECONDS);
+        Thread.sleep(120);
+        map.put(3, "rewritten", 200, TimeUnit.MILLISECONDS);
+        Thread.sleep(120);
+        map.cleanUp();
+
+        assertNull(map.get(1));
+        assertEquals("default", map.get(2));
+        assertEquals("rewritten", map.get(3));
+        assertEquals(2, map.size());
+        assertEquals("default", map.remove(2));
+        assertNull(map.remove(2));
+        assertThrows(IllegalArgumentException.class, () -> new ExpiringMap<Integer,String>(16, Bucket::new, 0,
+                TimeUnit.SECONDS, ExpiringMap.Expiry.AFTER_WRITE));
+    }
+
+    @Test
+    void wheelFiresEachTimerOnceDue() {
+        // simulated clock, so deadlines hours apart can be tested at once
+        long start = 1L << 40;
+        TimerWheel<Integer,String> wheel = new TimerWheel<>(start);
+        Random random = new Random(42);
+        List<TimerWheel.Node<Integer,String>> nodes = new ArrayList<>();
+        for(int i=0;i<5000;i++) {
+            long delay = (long) Math.pow(10, 3 + random.nextDouble() * 10); // 1us to ~3h
+            Entry<Integer,String> e = new Entry<>(i, i, "v");
+            e.expiresAt = start + delay;
+            TimerWheel.Node<Integer,String> node = new TimerWheel.Node<>(e, 0);
+            if (i % 10 == 0) node.cancelled = true;
+            nodes.add(node);
+            wheel.schedule(node, e.expiresAt);
+        }
+
+        long[] firedAt = new long[nodes.size()];
+        long step = TimeUnit.MILLISECONDS.toNanos(7);
+        for(long now=start;now<=start + TimeUnit.HOURS.toNanos(4);now+=step) {
+            long time = now;
+            wheel.advance(now, node -> {
+                assertEquals(0, firedAt[node.entry.key], "fired twice");
+                firedAt[node.entry.key] = time;
+            });
+        }
+        for(int i=0;i<nodes.size();i++) {
+            if (i % 10 == 0) {
+                assertEquals(0, firedAt[i]);
+            } else {
+                long deadline = nodes.get(i).entry.expiresAt;
+                assertTrue(firedAt[i] >= deadline && firedAt[i] < deadline + step);
+            }
+        }
+    }
+
+    @Test
+    void concurrentWritersExpireEverything() throws InterruptedException {
+        int threads = 8, opsPerThread = 2000;
+        for (Supplier<? extends BucketInterface<Integer,String>> supplier : BucketSuppliers.<Integer,String>allBuckets()) {
+            ExpiringMap<Integer,String> map = new ExpiringMap<>(256, supplier, 50, TimeUnit.MILLISECONDS,
+                    ExpiringMap.Expiry.AFTER_WRITE);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch latch = new CountDownLatch(threads);
+            for(int t=0;t<threads;t++) {
+                int base = t * opsPerThread / 2;
+                executor.submit(() -> {
+                    for(int i=0;i<opsPerThread;i++) {
+                        map.put(base + i, "v");
+                        if (i % 3 == 0) map.remove(base + i / 2);
+                    }
+                    latch.countDown();
+                });
+            }
+            latch.await();
+            executor.shutdown();
+
+            Thread.sleep(150);
+            map.cleanUp();
+            assertEquals(0, map.size());
+            assertEquals(0, map.getMap().size(SizeMode.EXACT));
+            assertEquals(0, map.timerCount()); // removed and expired entries leave the side map
+        }
+    }
+
+    @Test
+    void rewriteRacingWithExpirySurvives() throws InterruptedException {
+        for (Supplier<? extends BucketInterface<Integer,String>> supplier : BucketSuppliers.<Integer,String>allBuckets()) {
+            ExpiringMap<Integer,String> map = new ExpiringMap<>(16, supplier, 1, TimeUnit.HOURS,
+                    ExpiringMap.Expiry.AFTER_WRITE);
+            AtomicBoolean done = new AtomicBoolean();
+            Thread cleaner = new Thread(() -> {
+                while (!done.get()) map.cleanUp();
+            });
+            cleaner.start();
+            try {
+                for(int i=0;i<20000;i++) {
+                    int key = i % 64;
+                    map.put(key, "short", 1, TimeUnit.NANOSECONDS);
+                    map.put(key, "long");
+                    assertEquals("long", map.get(key));
+                }
+            } finally {
+                done.set(true);
+                cleaner.join();
+            }
+        }
+    }
+}
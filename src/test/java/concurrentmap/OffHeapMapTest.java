@@ -0,0 +1,131 @@
+package concurrentmap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * Unit tests for OffHeapMap
+ * - Basic put/get/remove with content-compared keys
+ * - Random workloads checked against HashMap, covering log compaction and index growth
+ * - Memory accounting and close()
+ * - Concurrent writers
+ */
+class OffHeapMapTest {
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void singleThreadPutGetRemove() {
+        try (OffHeapMap map = new OffHeapMap()) {
+            map.put(bytes("one"), bytes("1"));
+            map.put(bytes("two"), bytes("2"));
+            map.put(bytes("one"), bytes("11"));
+
+            // keys are compared by content, not identity
+            assertArrayEquals(bytes("11"), map.get(bytes("one")));
+            assertArrayEquals(bytes("2"), map.get(bytes("two")));
+            assertNull(map.get(bytes("three")));
+            assertEquals(2, map.size());
+
+            assertArrayEquals(bytes("11"), map.remove(bytes("one")));
+            assertNull(map.remove(bytes("one")));
+            assertEquals(1, map.size());
+
+            map.put(new byte[0], new byte[0]);
+            assertArrayEquals(new byte[0], map.get(new byte[0]));
+        }
+    }
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        Random random = new Random(7);
+        Map<String, String> expected = new HashMap<>();
+        try (OffHeapMap map = new OffHeapMap(2, 256)) {
+            for(int i=0;i<50_000;i++) {
+                String key = "key-" + random.nextInt(2000);
+                if(random.nextInt(4) == 0) {
+                    String old = expected.remove(key);
+                    byte[] removed = map.remove(bytes(key));
+                    assertEquals(old, removed == null ? null : new String(removed, StandardCharsets.UTF_8));
+                } else {
+                    String value = "v".repeat(random.nextInt(40));
+                    String old = expected.put(key, value);
+                    byte[] previous = map.put(bytes(key), bytes(value));
+                    assertEquals(old, previous == null ? null : new String(previous, StandardCharsets.UTF_8));
+                }
+            }
+
+            assertEquals(expected.size(), map.size());
+            for(int i=0;i<2000;i++) {
+                String key = "key-" + i;
+                byte[] value = map.get(bytes(key));
+                assertEquals(expected.get(key), value == null ? null : new String(value, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void accountsForNativeMemoryAndReleasesItOnClose() {
+        OffHeapMap map = new OffHeapMap(1, 1024);
+        long initial = map.getAllocatedBytes();
+        assertTrue(initial > 0);
+
+        for(int i=0;i<1000;i++) {
+            map.put(bytes("k" + i), new byte[100]);
+        }
+        assertTrue(map.getAllocatedBytes() > initial);
+        long live = map.getLiveBytes();
+        assertTrue(live >= 1000 * 100);
+
+        for(int i=0;i<500;i++) {
+            map.remove(bytes("k" + i));
+        }
+        assertTrue(map.getLiveBytes() < live);
+
+        map.close();
+        map.close();
+        assertEquals(0, map.getAllocatedBytes());
+        assertEquals(0, map.getLiveBytes());
+        assertThrows(IllegalStateException.class, () -> map.get(bytes("k1")));
+        assertThrows(IllegalStateException.class, () -> map.put(bytes("k1"), bytes("v")));
+        assertThrows(IllegalStateException.class, map::size);
+    }
+
+    @Test
+    void concurrentWriters() throws InterruptedException {
+        try (OffHeapMap map = new OffHeapMap(4, 1024)) {
+            int threadCount = 8;
+            int keysPerThread = 2000;
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            CountDownLatch latch = new CountDownLatch(threadCount);
+
+            for(int t=0;t<threadCount;t++) {
+                int threadId = t;
+                executor.submit(() -> {
+                    for(int i=0;i<keysPerThread;i++) {
+                        String key = threadId + ":" + i;
+                        map.put(bytes(key), bytes(key));
+                        if(i % 2 == 0) map.remove(bytes(key));
+                    }
+                    latch.countDown();
+                });
+            }
+            latch.await();
+            executor.shutdown();
+
+            assertEquals(threadCount * keysPerThread / 2, map.size());
+            for(int t=0;t<threadCount;t++) {
+                for(int i=1;i<keysPerThread;i+=2) {
+                    assertArrayEquals(bytes(t + ":" + i), map.get(bytes(t + ":" + i)));
+                }
+            }
+        }
+    }
+}
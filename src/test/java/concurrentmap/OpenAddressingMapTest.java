@@ -0,0 +1,119 @@
+package concurrentmap;
+
+import org.junit.jupiter.api.Test;
+import utils.HashStrategy;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.concurrent.*;
+
+/**
+ * Unit tests for OpenAddressingMap
+ * - Basic put/get/remove
+ * - Growth and tombstone reuse through rebuilds
+ * - Colliding hashes probe past each other
+ * - Concurrent writers with lock-free readers
+ */
+class OpenAddressingMapTest {
+
+    @Test
+    void singleThreadPutGetRemove() {
+        OpenAddressingMap<String, Integer> map = new OpenAddressingMap<>();
+
+        assertNull(map.put("one",1));
+        map.put("two",2);
+        assertEquals(1, map.put("one",11));
+
+        assertEquals(11, map.get("one"));
+        assertEquals(2, map.get("two"));
+        assertNull(map.get("three"));
+        assertEquals(2, map.size());
+
+        assertEquals(11, map.remove("one"));
+        assertNull(map.remove("one"));
+        assertNull(map.get("one"));
+        assertEquals(1, map.size());
+
+        assertThrows(NullPointerException.class, () -> map.put(null, 1));
+        assertThrows(NullPointerException.class, () -> map.put("x", null));
+    }
+
+    @Test
+    void growsAndReusesTombstones() {
+        OpenAddressingMap<Integer, Integer> map = new OpenAddressingMap<>(4);
+        for(int i=0;i<10_000;i++) {
+            map.put(i,i);
+        }
+        assertTrue(map.getCapacity() >= 10_000);
+        for(int i=0;i<10_000;i++) {
+            assertEquals(i, map.get(i));
+        }
+
+        // churn at constant size: once settled, rebuilds drop tombstones instead of growing
+        int capacity = 0;
+        for(int r=0;r<20;r++) {
+            if(r == 2) capacity = map.getCapacity();
+            for(int i=0;i<10_000;i++) {
+                map.remove(i);
+                map.put(i + 10_000 * (r + 1), i);
+            }
+            for(int i=0;i<10_000;i++) {
+                map.remove(i + 10_000 * (r + 1));
+                map.put(i, i);
+            }
+        }
+        assertEquals(capacity, map.getCapacity());
+        assertEquals(10_000, map.size());
+        for(int i=0;i<10_000;i++) {
+            assertEquals(i, map.get(i));
+        }
+    }
+
+    @Test
+    void collidingHashesProbeToNeighbouringSlots() {
+        OpenAddressingMap<Integer, Integer> map =
+                new OpenAddressingMap<>(64, key -> 7, new StripedLocks(4));
+        for(int i=0;i<40;i++) {
+            map.put(i,i);
+        }
+        map.remove(5);
+        assertNull(map.get(5));
+        for(int i=0;i<40;i++) {
+            if(i != 5) assertEquals(i, map.get(i));
+        }
+        map.put(5,50);
+        assertEquals(50, map.get(5));
+        assertEquals(40, map.size());
+    }
+
+    @Test
+    void concurrentWritersAndReaders() throws InterruptedException {
+        OpenAddressingMap<Integer, Integer> map =
+                new OpenAddressingMap<>(16, HashStrategy.SPREAD, new StripedLocks(8));
+        int threadCount = 8;
+        int keysPerThread = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+        for(int t=0;t<threadCount;t++) {
+            int threadId = t;
+            executor.submit(() -> {
+                for(int i=0;i<keysPerThread;i++) {
+                    int key = threadId * keysPerThread + i;
+                    map.put(key, key);
+                    Integer v = map.get(key);
+                    if(v == null || v != key) errors.add(key + "=" + v);
+                    if(i % 2 == 0) map.remove(key);
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+
+        assertTrue(errors.isEmpty(), errors.toString());
+        assertEquals(threadCount * keysPerThread / 2, map.size());
+        for(int key=0;key<threadCount*keysPerThread;key++) {
+            assertEquals(key % 2 == 0 ? null : key, map.get(key));
+        }
+    }
+}
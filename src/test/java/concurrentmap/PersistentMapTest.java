@@ -0,0 +1,203 @@
+package concurrentmap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Unit tests for PersistentMap
+ * - Mappings survive close and reopen without recovery
+ * - A map that was not closed is recovered from its log
+ * - Torn records end recovery, and stale records behind them are never replayed
+ * - Concurrent writers
+ * - flush() racing close() never touches unmapped buffers
+ */
+class PersistentMapTest {
+
+    // 16 buckets: the log starts at file offset 8192, first record at log offset 8
+    private static final int BUCKETS = 16;
+    private static final int CHUNK = 4096;
+    private static final long LOG_BASE = 8192;
+    private static final int RECORD = 40; // header + 2-byte key + 2-byte value, aligned
+
+    @TempDir
+    Path dir;
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] b) {
+        return b == null ? null : new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void corrupt(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xff}), position);
+        }
+    }
+
+    @Test
+    void mappingsSurviveReopen() throws IOException {
+        Path file = dir.resolve("map.db");
+        try (PersistentMap map = new PersistentMap(file, BUCKETS, CHUNK)) {
+            for(int i=0;i<1000;i++) {
+                map.put(bytes("key-" + i), bytes("value-" + i));
+            }
+            assertEquals("value-1", string(map.put(bytes("key-1"), bytes("updated"))));
+            assertEquals("value-2", string(map.remove(bytes("key-2"))));
+            assertEquals(999, map.size());
+        }
+        assertTrue(Files.size(file) > LOG_BASE + CHUNK); // log spans several chunks
+
+        try (PersistentMap map = new PersistentMap(file, BUCKETS, CHUNK)) {
+            assertFalse(map.wasRecovered());
+            assertEquals(999, map.size());
+            assertEquals("updated", string(map.get(bytes("key-1"))));
+            assertNull(map.get(bytes("key-2")));
+            assertEquals("value-999", string(map.get(bytes("key-999"))));
+        }
+        assertThrows(IOException.class, () -> {
+            Path other = dir.resolve("other.db");
+            Files.write(other, new byte[4096]);
+            new PersistentMap(other);
+        });
+    }
+
+    @Test
+    void uncleanShutdownIsRecoveredFromTheLog() throws IOException {
+        Path file = dir.resolve("map.db");
+        PersistentMap crashed = new PersistentMap(file, BUCKETS, CHUNK);
+        for(int i=0;i<500;i++) {
+            crashed.put(bytes("key-" + i), bytes("value-" + i));
+        }
+        for(int i=0;i<500;i+=2) {
+            crashed.remove(bytes("key-" + i));
+        }
+        crashed.put(bytes("key-1"), bytes("updated"));
+        // never closed: the next open sees a dirty file
+
+        try (PersistentMap map = new PersistentMap(file)) {
+            assertTrue(map.wasRecovered());
+            assertEquals(250, map.size());
+            assertEquals("updated", string(map.get(bytes("key-1"))));
+            assertNull(map.get(bytes("key-0")));
+            assertEquals("value-499", string(map.get(bytes("key-499"))));
+        }
+    }
+
+    @Test
+    void recoveryStopsAtTornRecordAndNeverReplaysStaleOnes() throws IOException {
+        Path file = dir.resolve("map.db");
+        PersistentMap first = new PersistentMap(file, BUCKETS, CHUNK);
+        first.put(bytes("k1"), bytes("v1"));
+        first.put(bytes("k2"), bytes("v2"));
+        first.put(bytes("k3"), bytes("v3"));
+        first.put(bytes("k4"), bytes("v4"));
+        // tear the second record's payload, as a crash during write-back would
+        corrupt(file, LOG_BASE + 8 + RECORD + 32);
+
+        PersistentMap second = new PersistentMap(file, BUCKETS, CHUNK);
+        assertTrue(second.wasRecovered());
+        assertEquals("v1", string(second.get(bytes("k1"))));
+        assertNull(second.get(bytes("k2")));
+        assertNull(second.get(bytes("k3")));
+        assertEquals(1, second.size());
+
+        // overwrites the torn record, k3 and k4 are still intact behind it
+        second.put(bytes("k5"), bytes("v5"));
+
+        try (PersistentMap third = new PersistentMap(file, BUCKETS, CHUNK)) {
+            assertTrue(third.wasRecovered());
+            assertEquals("v5", string(third.get(bytes("k5"))));
+            assertNull(third.get(bytes("k3")));
+            assertNull(third.get(bytes("k4")));
+            assertEquals(2, third.size());
+        }
+    }
+
+    @Test
+    void concurrentWriters() throws Exception {
+        Path file = dir.resolve("map.db");
+        try (PersistentMap map = new PersistentMap(file, 64, 1 << 16)) {
+            int threadCount = 8;
+            int keysPerThread = 1000;
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            CountDownLatch latch = new CountDownLatch(threadCount);
+
+            for(int t=0;t<threadCount;t++) {
+                int threadId = t;
+                executor.submit(() -> {
+                    for(int i=0;i<keysPerThread;i++) {
+                        String key = threadId + ":" + i;
+                        map.put(bytes(key), bytes(key));
+                        if(i % 2 == 0) map.remove(bytes(key));
+                    }
+                    latch.countDown();
+                });
+            }
+            latch.await();
+            executor.shutdown();
+            map.flush();
+
+            assertEquals(threadCount * keysPerThread / 2, map.size());
+        }
+        try (PersistentMap map = new PersistentMap(file)) {
+            assertEquals(4000, map.size());
+            assertEquals("3:999", string(map.get(bytes("3:999"))));
+            assertNull(map.get(bytes("3:998")));
+        }
+    }
+
+    @Test
+    void flushRacingCloseNeverTouchesUnmappedBuffers() throws Exception {
+        int threadCount = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for(int round=0;round<50;round++) {
+                Path file = dir.resolve("map-" + round + ".db");
+                PersistentMap map = new PersistentMap(file, BUCKETS, CHUNK);
+                for(int i=0;i<200;i++) {
+                    map.put(bytes("key-" + i), bytes("value-" + i));
+                }
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> flushers = new ArrayList<>();
+                for(int t=0;t<threadCount;t++) {
+                    flushers.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            while (true) {
+                                map.flush();
+                            }
+                        } catch (IllegalStateException closed) {
+                            return null;
+                        }
+                    }));
+                }
+                start.countDown();
+                map.close();
+                for (Future<?> f : flushers) {
+                    f.get(10, TimeUnit.SECONDS); // rethrows anything but the closed-map error
+                }
+                assertThrows(IllegalStateException.class, map::size);
+
+                try (PersistentMap reopened = new PersistentMap(file)) {
+                    assertFalse(reopened.wasRecovered());
+                    assertEquals(200, reopened.size());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
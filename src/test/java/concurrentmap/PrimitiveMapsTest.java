@@ -0,0 +1,137 @@
+package concurrentmap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * Unit tests for the primitive maps (IntIntMap, LongLongMap, LongObjectMap)
+ * - Basic put/get/remove, key 0 and the missing value
+ * - Random workloads checked against HashMap, covering growth and back-shift removal
+ * - Concurrent writers
+ */
+class PrimitiveMapsTest {
+
+    @Test
+    void intIntMapBasics() {
+        IntIntMap map = new IntIntMap(4, 2, -1);
+
+        assertEquals(-1, map.put(1, 10));
+        assertEquals(10, map.put(1, 11));
+        assertEquals(-1, map.put(0, 0));
+        assertEquals(11, map.get(1));
+        assertEquals(0, map.get(0));
+        assertEquals(-1, map.get(2));
+        assertEquals(7, map.getOrDefault(2, 7));
+        assertTrue(map.containsKey(0));
+        assertFalse(map.containsKey(2));
+        assertEquals(2, map.size());
+
+        assertEquals(0, map.remove(0));
+        assertEquals(-1, map.remove(0));
+        assertEquals(11, map.remove(1));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void longLongMapBasics() {
+        LongLongMap map = new LongLongMap();
+
+        map.put(Long.MAX_VALUE, 1L);
+        map.put(Long.MIN_VALUE, 2L);
+        map.put(0L, 3L);
+        assertEquals(1L, map.get(Long.MAX_VALUE));
+        assertEquals(2L, map.get(Long.MIN_VALUE));
+        assertEquals(3L, map.get(0L));
+        assertEquals(0L, map.get(5L));
+        assertEquals(3, map.size());
+        assertEquals(2L, map.remove(Long.MIN_VALUE));
+        assertFalse(map.containsKey(Long.MIN_VALUE));
+    }
+
+    @Test
+    void longObjectMapBasics() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+
+        assertNull(map.put(42L, "a"));
+        assertEquals("a", map.put(42L, "b"));
+        assertNull(map.put(0L, "zero"));
+        assertEquals("b", map.get(42L));
+        assertEquals("zero", map.get(0L));
+        assertNull(map.get(7L));
+        assertEquals(2, map.size());
+        assertEquals("zero", map.remove(0L));
+        assertNull(map.remove(0L));
+        assertThrows(NullPointerException.class, () -> map.put(1L, null));
+    }
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        Random random = new Random(42);
+        IntIntMap ints = new IntIntMap(2, 2, -1);
+        LongLongMap longs = new LongLongMap(2, 2, -1L);
+        LongObjectMap<Integer> objects = new LongObjectMap<>(2, 2);
+        Map<Integer, Integer> expected = new HashMap<>();
+
+        for(int i=0;i<200_000;i++) {
+            int key = random.nextInt(5000) - 100; // includes 0 and negatives
+            int value = random.nextInt(1000);
+            if(random.nextInt(3) == 0) {
+                Integer old = expected.remove(key);
+                assertEquals(old == null ? -1 : old, ints.remove(key));
+                assertEquals(old == null ? -1L : old, longs.remove(key));
+                assertEquals(old, objects.remove(key));
+            } else {
+                Integer old = expected.put(key, value);
+                assertEquals(old == null ? -1 : old, ints.put(key, value));
+                assertEquals(old == null ? -1L : old, longs.put(key, value));
+                assertEquals(old, objects.put(key, value));
+            }
+        }
+
+        assertEquals(expected.size(), ints.size());
+        assertEquals(expected.size(), longs.size());
+        assertEquals(expected.size(), objects.size());
+        for(int key=-100;key<4900;key++) {
+            Integer v = expected.get(key);
+            assertEquals(v == null ? -1 : v, ints.get(key));
+            assertEquals(v == null ? -1L : v, longs.get(key));
+            assertEquals(v, objects.get(key));
+        }
+    }
+
+    @Test
+    void concurrentWritersAndReaders() throws InterruptedException {
+        IntIntMap map = new IntIntMap(16, 4, -1);
+        int threadCount = 8;
+        int keysPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+        for(int t=0;t<threadCount;t++) {
+            int threadId = t;
+            executor.submit(() -> {
+                for(int i=0;i<keysPerThread;i++) {
+                    int key = threadId * keysPerThread + i;
+                    map.put(key, key);
+                    int v = map.get(key);
+                    if(v != key) errors.add(key + "=" + v);
+                    if(i % 2 == 0) map.remove(key);
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+
+        assertTrue(errors.isEmpty(), errors.toString());
+        assertEquals(threadCount * keysPerThread / 2, map.size());
+        for(int key=0;key<threadCount*keysPerThread;key++) {
+            assertEquals(key % 2 == 0 ? -1 : key, map.get(key));
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package concurrentmap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.HashStrategy;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Unit tests for ResizableConcurrentMap
+ * - Growth through several resizes
+ * - No writes lost while buckets are being migrated
+ * - Updates and removes racing a lock-free migration are applied exactly once
+ * - Resizing reuses the hash cached in each entry
+ * - Snapshot and restore, with built-in and custom codecs
+ * - Compute, merge and conditional writes stay atomic while buckets are being migrated
+ * - putAll grows the table once up front and getAll reads across a resize
+ * - getOrLoad loads each key once while the table grows
+ */
+class ResizableConcurrentMapTest {
+
+    // Key that counts how often its hashCode() is computed
+    private static final class CountingKey {
+        static final AtomicInteger hashCalls = new AtomicInteger();
+        final int id;
+
+        CountingKey(int id) { this.id = id; }
+
+        @Override
+        public int hashCode() {
+            hashCalls.incrementAndGet();
+            return id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CountingKey other && other.id == id;
+        }
+    }
+
+    private <K,V> ResizableConcurrentMap<K,V> createMap(Supplier<? extends BucketInterface<K,V>> supplier) {
+        return new ResizableConcurrentMap<>(4, 0.75, 2, supplier);
+    }
+
+    @Test
+    void growsAndKeepsAllEntries() {
+        ResizableConcurrentMap<Integer, Integer> map = createMap(Bucket::new);
+        for(int i=0;i<5000;i++) {
+            map.put(i,i);
+        }
+        // Finish any resize still in flight
+        while(map.isResizing()) {
+            map.put(0,0);
+        }
+
+        assertTrue(map.getInternalMap().getCapacity() > 4);
+        assertEquals(5000, map.size());
+        for(int i=0;i<5000;i++) {
+            assertEquals(i, map.get(i));
+        }
+    }
+
+    @Test
+    void resizeDoesNotRecomputeHashCodes() {
+        ResizableConcurrentMap<CountingKey, Integer> map = createMap(Bucket::new);
+        CountingKey.hashCalls.set(0);
+        for(int i=0;i<1000;i++) {
+            map.put(new CountingKey(i),i);
+        }
+        int removes = 0;
+        while(map.isResizing()) {
+            map.remove(new CountingKey(-1));
+            removes++;
+        }
+
+        assertTrue(map.getInternalMap().getCapacity() > 4);
+        // one hashCode() per put and per helper remove, none during migration
+        assertEquals(1000 + removes, CountingKey.hashCalls.get());
+        assertEquals(1000, map.size());
+    }
+
+    @Test
+    void resizeAllocatesOnlyUsedBuckets() {
+        AtomicInteger created = new AtomicInteger();
+        ResizableConcurrentMap<Integer, Integer> map = new ResizableConcurrentMap<>(1024, 0.75, 2, () -> {
+            created.incrementAndGet();
+            return new Bucket<Integer, Integer>();
+        }, HashStrategy.IDENTITY);
+        // multiples of 4096 all land in slot 0 of every table up to 4096 buckets
+        for(int i=0;i<1000;i++) {
+            map.put(i * 4096, i);
+        }
+        while(map.isResizing()) {
+            map.put(0,0);
+        }
+
+        assertTrue(map.getInternalMap().getCapacity() > 1024);
+        // one bucket per table, the empty slots were sealed without allocating
+        assertEquals(2, created.get());
+        for(int i=0;i<1000;i++) {
+            assertEquals(i, map.get(i * 4096));
+        }
+    }
+
+    @Test
+    void concurrentWritesDuringResizeAreNotLost() throws InterruptedException {
+        concurrentWritesDuringResize(Bucket::new);
+        concurrentWritesDuringResize(LockFreeBucket::new);
+        concurrentWritesDuringResize(TreeBucket::new);
+        concurrentWritesDuringResize(AdaptiveBucket::new);
+        concurrentWritesDuringResize(StampedBucket::new);
+        // every table of the resize shares the pool; one stripe guards all buckets
+        concurrentWritesDuringResize(new StripedLocks(4)::newBucket);
+        concurrentWritesDuringResize(new StripedLocks(1)::newBucket);
+    }
+
+    private void concurrentWritesDuringResize(Supplier<? extends BucketInterface<Integer,Integer>> supplier)
+            throws InterruptedException {
+        ResizableConcurrentMap<Integer, Integer> map = createMap(supplier);
+        int threadCount = 8;
+        int operationsPerThread = 2000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for(int t=0;t<threadCount;t++) {
+            int threadId = t;
+            executor.submit(() -> {
+                for(int i=0;i<operationsPerThread;i++) {
+                    int key = threadId*operationsPerThread+i;
+                    map.put(key,key);
+                    if(i % 2 == 0) {
+                        map.remove(key);
+                    }
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+
+        for(int t=0;t<threadCount;t++) {
+            for(int i=0;i<operationsPerThread;i++) {
+                int key = t*operationsPerThread+i;
+                if(i % 2 == 0) {
+                    assertNull(map.get(key));
+                } else {
+                    assertEquals(key, map.get(key));
+                }
+            }
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void snapshotRestoreRoundTrip() throws IOException {
+        ResizableConcurrentMap<Integer,String> map = createMap(Bucket::new);
+        for(int i=0;i<5000;i++) map.put(i, "value-" + i);
+        Path file = dir.resolve("map.snap");
+        assertEquals(5000, map.snapshot(file, Codec.INT, Codec.STRING));
+
+        ResizableConcurrentMap<Integer,String> restored = createMap(TreeBucket::new);
+        assertEquals(5000, restored.restore(file, Codec.INT, Codec.STRING));
+        assertEquals(5000, restored.size());
+        assertEquals(5000, restored.size(SizeMode.EXACT));
+        for(int i=0;i<5000;i++) assertEquals("value-" + i, restored.get(i));
+    }
+
+    @Test
+    void restorePresizesOnceAndNeverResizesWhileLoading() throws IOException {
+        ResizableConcurrentMap<Integer,Integer> map = createMap(Bucket::new);
+        for(int i=0;i<20000;i++) map.put(i, -i);
+        Path file = dir.resolve("presize.snap");
+        map.snapshot(file, Codec.INT, Codec.INT);
+
+        ResizableConcurrentMap<Integer,Integer> restored = createMap(Bucket::new);
+        restored.put(-1, 1); // existing entries are kept and counted
+        restored.restore(file, Codec.INT, Codec.INT);
+        ConcurrentCustomMap<Integer,Integer> table = restored.getInternalMap();
+        assertFalse(restored.isResizing());
+        assertEquals(20001, restored.size(SizeMode.EXACT));
+        assertTrue((double) restored.size() / table.getCapacity() <= 0.75);
+        // the table was grown by the usual multiplier, just in one step
+        assertTrue(Integer.bitCount(table.getCapacity()) == 1);
+        for(int i=0;i<20000;i++) assertEquals(-i, restored.get(i));
+        assertEquals(1, restored.get(-1));
+    }
+
+    @Test
+    void snapshotWithCustomCodecAndLargeBlocks() throws IOException {
+        // values bigger than a block force one block per few buckets
+        Codec<int[]> arrays = new Codec<>() {
+            @Override
+            public void write(int[] value, DataOutput out) throws IOException {
+                out.writeInt(value.length);
+                for (int v : value) out.writeInt(v);
+            }
+
+            @Override
+            public int[] read(DataInput in) throws IOException {
+                int[] value = new int[in.readInt()];
+                for(int i=0;i<value.length;i++) value[i] = in.readInt();
+                return value;
+            }
+        };
+        ResizableConcurrentMap<String,int[]> map = createMap(LockFreeBucket::new);
+        for(int i=0;i<40;i++) map.put("k" + i, new int[MapSnapshot.BLOCK_BYTES / 16 + i]);
+        Path file = dir.resolve("custom.snap");
+        map.snapshot(file, Codec.STRING, arrays);
+
+        ResizableConcurrentMap<String,int[]> restored = createMap(LockFreeBucket::new);
+        assertEquals(40, restored.restore(file, Codec.STRING, arrays));
+        for(int i=0;i<40;i++) assertEquals(MapSnapshot.BLOCK_BYTES / 16 + i, restored.get("k" + i).length);
+    }
+
+    @Test
+    void restoreRejectsTruncatedSnapshot() throws IOException {
+        ResizableConcurrentMap<Integer,Integer> map = createMap(Bucket::new);
+        for(int i=0;i<100;i++) map.put(i, i);
+        Path file = dir.resolve("truncated.snap");
+        map.snapshot(file, Codec.INT, Codec.INT);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 5));
+
+        assertThrows(IOException.class, () -> createMap(Bucket::new).restore(file, Codec.INT, Codec.INT));
+    }
+
+    @Test
+    void mergeDuringResizeIsAtomic() throws InterruptedException {
+        List<Supplier<? extends BucketInterface<Integer,Integer>>> suppliers =
+                List.of(Bucket::new, LockFreeBucket::new, TreeBucket::new, AdaptiveBucket::new, StampedBucket::new);
+        int threads = 8, ops = 5000;
+        for (Supplier<? extends BucketInterface<Integer,Integer>> supplier : suppliers) {
+            ResizableConcurrentMap<Integer,Integer> map = createMap(supplier);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch latch = new CountDownLatch(threads);
+            for(int t=0;t<threads;t++) {
+                executor.submit(() -> {
+                    for(int i=0;i<ops;i++) {
+                        map.merge(i, 1, Integer::sum); // every key is hit once per thread
+                        map.computeIfAbsent(-1 - i, k -> k);
+                    }
+                    latch.countDown();
+                });
+            }
+            latch.await();
+            executor.shutdown();
+
+            for(int i=0;i<ops;i++) {
+                assertEquals(threads, map.get(i));
+                assertEquals(-1 - i, map.get(-1 - i));
+            }
+            assertEquals(2 * ops, map.size());
+            assertTrue(map.getInternalMap().getCapacity() > 4);
+        }
+    }
+
+    @Test
+    void lockFreeChurnDuringResizeKeepsCountsExact() throws InterruptedException {
+        int threads = 8, hotKeys = 64, opsPerThread = 20000;
+        for(int trial=0;trial<10;trial++) {
+            ResizableConcurrentMap<Integer,Integer> map = new ResizableConcurrentMap<>(2, 0.75, 2, LockFreeBucket::new);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch latch = new CountDownLatch(threads);
+            for(int t=0;t<threads;t++) {
+                int base = (t + 1) * opsPerThread;
+                executor.submit(() -> {
+                    for(int i=0;i<opsPerThread;i++) {
+                        int hot = i % hotKeys;
+                        if (i % 3 == 0) map.remove(hot);
+                        else map.put(hot, i);
+                        if (i % 8 == 0) map.put(base + i, i); // keeps the table growing under the churn
+                    }
+                    latch.countDown();
+                });
+            }
+            latch.await();
+            executor.shutdown();
+
+            int present = 0;
+            for(int hot=0;hot<hotKeys;hot++) if (map.get(hot) != null) present++;
+            int expected = present + threads * (opsPerThread / 8);
+            assertEquals(expected, map.size(SizeMode.EXACT));
+            assertEquals(expected, map.size());
+        }
+    }
+
+    @Test
+    void putIfAbsentClaimsEachKeyOnceDuringResize() throws InterruptedException {
+        int threads = 8, keys = 5000;
+        ResizableConcurrentMap<Integer,Integer> map = createMap(LockFreeBucket::new);
+        AtomicInteger claimed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        for(int t=0;t<threads;t++) {
+            int id = t;
+            executor.submit(() -> {
+                for(int i=0;i<keys;i++) {
+                    if (map.putIfAbsent(i, id) == null) claimed.incrementAndGet();
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+
+        assertEquals(keys, claimed.get());
+        assertEquals(keys, map.size());
+        for(int i=0;i<keys;i++) {
+            int owner = map.get(i);
+            assertFalse(map.remove(i, owner + 1));
+            assertTrue(map.replace(i, owner, -1));
+            assertTrue(map.remove(i, -1));
+        }
+        assertEquals(0, map.size(SizeMode.EXACT));
+    }
+
+    @Test
+    void putAllPresizesAndGetAllSeesEveryKey() throws InterruptedException {
+        ResizableConcurrentMap<Integer,Integer> map = createMap(Bucket::new);
+        Map<Integer,Integer> batch = new HashMap<>();
+        for(int i=0;i<10000;i++) batch.put(i, i * 2);
+        map.putAll(batch);
+        assertEquals(10000, map.size());
+        assertTrue(10000.0 / map.getInternalMap().getCapacity() <= 0.75);
+        assertEquals(batch, map.getAll(batch.keySet()));
+
+        // batches racing with each other and with the resizes they trigger
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        for(int t=0;t<threads;t++) {
+            int base = 10000 + t * 20000;
+            executor.submit(() -> {
+                for(int b=0;b<20;b++) {
+                    Map<Integer,Integer> chunk = new HashMap<>();
+                    for(int i=0;i<1000;i++) chunk.put(base + b * 1000 + i, i);
+                    map.putAll(chunk);
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+        assertEquals(10000 + threads * 20000, map.size(SizeMode.EXACT));
+        List<Integer> keys = new ArrayList<>();
+        for(int i=0;i<10000 + threads * 20000;i++) keys.add(i);
+        assertEquals(10000 + threads * 20000, map.getAll(keys).size());
+    }
+
+    @Test
+    void getOrLoadLoadsEachKeyOnceDuringResize() throws InterruptedException {
+        int threads = 8, keys = 5000;
+        ResizableConcurrentMap<Integer,Integer> map = createMap(LockFreeBucket::new);
+        AtomicInteger loads = new AtomicInteger(), wrong = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        for(int t=0;t<threads;t++) {
+            executor.submit(() -> {
+                for(int i=0;i<keys;i++) {
+                    if (map.getOrLoad(i, key -> { loads.incrementAndGet(); return key; }) != i) wrong.incrementAndGet();
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+
+        assertEquals(keys, loads.get());
+        assertEquals(keys, map.size());
+        assertEquals(0, wrong.get());
+        assertTrue(map.getInternalMap().getCapacity() > 4);
+    }
+}